@@ -0,0 +1,221 @@
+/*   This file is part of lanSimulation.
+ *
+ *   lanSimulation is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *
+ *   lanSimulation is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with lanSimulation; if not, write to the Free Software
+ *   Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ *   Copyright original Java version: 2004 Bart Du Bois, Serge Demeyer
+ *   Copyright C++ version: 2006 Matthias Rieger, Bart Van Rompaey
+ */
+package lanSimulation;
+
+import java.io.Writer;
+import java.lang.reflect.Method;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * An <em>AsyncNetwork</em> runs the requests of a Network without blocking
+ * the caller until they finish: every request answers a CompletableFuture
+ * completed with the result of the request, or exceptionally when it failed.
+ * <p>
+ * At most #maxOutstanding_ requests are submitted and not yet finished at any
+ * time; a caller submitting more waits until one finishes, so that a fast
+ * producer cannot queue requests without bound. Requests run on a virtual
+ * thread each when the Java runtime offers them, and on one daemon thread per
+ * processor otherwise. As the Network serves requests without locking, they
+ * proceed in parallel; each request should write on its own report, or on
+ * #null.
+ * </p>
+ */
+public class AsyncNetwork {
+	private final Network network_;
+	private final ExecutorService executor_;
+	/**
+	 * Whether #receiver created #executor_, and shuts it down.
+	 */
+	private final boolean ownsExecutor_;
+	private final int maxOutstanding_;
+	/**
+	 * Holds a permit for every request that may still be submitted before
+	 * #maxOutstanding_ requests are outstanding.
+	 */
+	private final Semaphore permits_;
+
+	/**
+	 * Construct an <em>AsyncNetwork</em> running the requests of #network,
+	 * with at most #maxOutstanding requests outstanding at any time.
+	 * <p>
+	 * <strong>Precondition:</strong> network.isInitialized() & (maxOutstanding > 0);
+	 * </p>
+	 */
+	public AsyncNetwork(Network network, int maxOutstanding) {
+		this(network, maxOutstanding, newRequestExecutor(), true);
+	}
+
+	/**
+	 * Construct an <em>AsyncNetwork</em> running the requests of #network on
+	 * #executor, with at most #maxOutstanding requests outstanding at any
+	 * time. #executor is not shut down by #shutdown().
+	 * <p>
+	 * <strong>Precondition:</strong> network.isInitialized() & (maxOutstanding > 0);
+	 * </p>
+	 */
+	public AsyncNetwork(Network network, int maxOutstanding,
+			ExecutorService executor) {
+		this(network, maxOutstanding, executor, false);
+	}
+
+	private AsyncNetwork(Network network, int maxOutstanding,
+			ExecutorService executor, boolean ownsExecutor) {
+		assert network.isInitialized();
+		assert maxOutstanding > 0;
+		network_ = network;
+		executor_ = executor;
+		ownsExecutor_ = ownsExecutor;
+		maxOutstanding_ = maxOutstanding;
+		permits_ = new Semaphore(maxOutstanding);
+	}
+
+	/**
+	 * Answer an executor starting a virtual thread per request, or, when the
+	 * Java runtime has no virtual threads, a pool of one daemon thread per
+	 * processor: the requests never block, so more threads would not help.
+	 */
+	private static ExecutorService newRequestExecutor() {
+		try {
+			Method factory = Executors.class
+					.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService) factory.invoke(null);
+		} catch (Exception e) {
+			// no virtual threads before Java 21
+		}
+		;
+		return Executors.newFixedThreadPool(Runtime.getRuntime()
+				.availableProcessors(), new ThreadFactory() {
+			public Thread newThread(Runnable request) {
+				Thread thread = new Thread(request, "AsyncNetwork");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * Submit a request of #workstation to print #document on #printer, as
+	 * Network.requestWorkstationPrintsDocument(), writing the report on
+	 * #report unless it is #null. Waits while #maxOutstanding_ requests are
+	 * outstanding.
+	 * <p>
+	 * <strong>Precondition:</strong> network.hasWorkstation(workstation);
+	 * </p>
+	 */
+	public CompletableFuture<Boolean> requestWorkstationPrintsDocument(
+			final String workstation, final String document,
+			final String printer, final Writer report) {
+		return submit(new Request() {
+			boolean run() {
+				return network_.requestWorkstationPrintsDocument(workstation,
+						document, printer, report);
+			}
+		});
+	}
+
+	/**
+	 * Submit a broadcast, as Network.requestBroadcast(), writing the report
+	 * on #report unless it is #null. Waits while #maxOutstanding_ requests
+	 * are outstanding.
+	 * <p>
+	 * <strong>Precondition:</strong> network.consistentNetwork();
+	 * </p>
+	 */
+	public CompletableFuture<Boolean> requestBroadcast(final Writer report) {
+		return submit(new Request() {
+			boolean run() {
+				return network_.requestBroadcast(report);
+			}
+		});
+	}
+
+	/**
+	 * A request of #network_, run on #executor_.
+	 */
+	private static abstract class Request {
+		abstract boolean run();
+	}
+
+	/**
+	 * Wait for a permit, then run #request on #executor_. The permit is
+	 * returned before the answered future completes, so that the actions
+	 * depending on it may submit requests of their own.
+	 */
+	private CompletableFuture<Boolean> submit(final Request request) {
+		final CompletableFuture<Boolean> result = new CompletableFuture<Boolean>();
+		try {
+			permits_.acquire();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			result.completeExceptionally(e);
+			return result;
+		}
+		;
+		try {
+			executor_.execute(new Runnable() {
+				public void run() {
+					boolean done;
+					try {
+						done = request.run();
+					} catch (Throwable failure) {
+						permits_.release();
+						result.completeExceptionally(failure);
+						return;
+					}
+					;
+					permits_.release();
+					result.complete(Boolean.valueOf(done));
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			permits_.release();
+			result.completeExceptionally(e);
+		}
+		;
+		return result;
+	}
+
+	/**
+	 * Answer the number of requests submitted and not yet finished.
+	 */
+	public int outstandingRequests() {
+		return maxOutstanding_ - permits_.availablePermits();
+	}
+
+	public int getMaxOutstanding_() {
+		return maxOutstanding_;
+	}
+
+	/**
+	 * Shut down the executor when #receiver created it: it accepts no more
+	 * requests, but the outstanding requests still finish.
+	 */
+	public void shutdown() {
+		if (ownsExecutor_) {
+			executor_.shutdown();
+		}
+		;
+	}
+}
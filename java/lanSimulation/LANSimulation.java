@@ -20,8 +20,12 @@
 package lanSimulation;
 
 import lanSimulation.tests.*;
+import lanSimulation.internals.ReportSink;
 import java.lang.AssertionError;
 import java.io.*;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 public class LANSimulation {
 
@@ -114,21 +118,186 @@ public class LANSimulation {
 	System.out.println(report.toString());
     }
     
+    /**
+     * Holds the ratios swept by simulateParallel(): network i has
+     * WORKSTATION_RATIOS[i % 4] workstations and PRINTER_RATIOS[(i / 4) % 3]
+     * printers among its nodes.
+     */
+    private static final double[] WORKSTATION_RATIOS = {0.1, 0.3, 0.5, 0.7};
+    private static final double[] PRINTER_RATIOS = {0.05, 0.1, 0.2};
+
+    /**
+     * Simulate #nrOfNetworks independent random networks of #size nodes in
+     * parallel on #pool, network i being built from seed #seed + i with the
+     * ratios of workstations and printers it takes from WORKSTATION_RATIOS and
+     * PRINTER_RATIOS. Every network writes on a ReportSink of its own, backed
+     * by a temporary file, so the reports are never held in memory; they are
+     * copied on #out in the order of the networks, followed by the totals, so
+     * that the output does not depend on #pool.
+     * <p>
+     * <strong>Precondition:</strong> (nrOfNetworks > 0) & (size >= 2);
+     * </p>
+     */
+    public static void simulateParallel (int nrOfNetworks, int size, long seed,
+                                         ForkJoinPool pool, Writer out) throws IOException {
+        assert (nrOfNetworks > 0) & (size >= 2);
+        File[] reports = new File[nrOfNetworks];
+        int[] jobs = new int[nrOfNetworks], printed = new int[nrOfNetworks];
+        IOException[] failure = new IOException[1];
+
+        try {
+            for (int i = 0; i < nrOfNetworks; i++) {
+                reports[i] = File.createTempFile("network", ".txt");
+            };
+            pool.invoke(new Sweep(size, seed, reports, jobs, printed, failure, 0, nrOfNetworks));
+            if (failure[0] != null) {
+                throw failure[0];
+            };
+
+            int totalJobs = 0, totalPrinted = 0;
+            char[] chars = new char[1 << 13];
+            for (int i = 0; i < nrOfNetworks; i++) {
+                out.write("---------------------------------NETWORK " + i + " (seed " + (seed + i)
+                          + ", workstations " + workstationRatio(i) + ", printers " + printerRatio(i) + ")\n");
+                out.write(jobs[i] + " print jobs, " + printed[i] + " printed.\n");
+                Reader report = new InputStreamReader(new FileInputStream(reports[i]), "UTF-8");
+                try {
+                    for (int count = report.read(chars); count > 0; count = report.read(chars)) {
+                        out.write(chars, 0, count);
+                    };
+                } finally {
+                    report.close();
+                };
+                totalJobs += jobs[i];
+                totalPrinted += printed[i];
+            };
+            out.write("---------------------------------TOTAL\n");
+            out.write(nrOfNetworks + " networks, " + totalJobs + " print jobs, " + totalPrinted + " printed.\n");
+            out.flush();
+        } finally {
+            for (int i = 0; i < nrOfNetworks; i++) {
+                if (reports[i] != null) {
+                    reports[i].delete();
+                };
+            };
+        }
+    }
+
+    private static double workstationRatio (int i) {
+        return WORKSTATION_RATIOS[i % WORKSTATION_RATIOS.length];
+    }
+
+    private static double printerRatio (int i) {
+        return PRINTER_RATIOS[(i / WORKSTATION_RATIOS.length) % PRINTER_RATIOS.length];
+    }
+
+    /**
+     * A <em>Sweep</em> simulates the networks [from_, to_) of simulateParallel(),
+     * splitting itself until it holds a single network. Every network writes its
+     * report on its own file and counts at its own index, so the networks share
+     * nothing but #failure_, which holds the first exception writing a report.
+     */
+    private static class Sweep extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final int size_;
+        private final long seed_;
+        private final File[] reports_;
+        private final int[] jobs_, printed_;
+        private final IOException[] failure_;
+        private final int from_, to_;
+
+        Sweep(int size, long seed, File[] reports, int[] jobs, int[] printed, IOException[] failure,
+              int from, int to) {
+            size_ = size;
+            seed_ = seed;
+            reports_ = reports;
+            jobs_ = jobs;
+            printed_ = printed;
+            failure_ = failure;
+            from_ = from;
+            to_ = to;
+        }
+
+        protected void compute() {
+            if (to_ - from_ > 1) {
+                int middle = (from_ + to_) >>> 1;
+                invokeAll(new Sweep(size_, seed_, reports_, jobs_, printed_, failure_, from_, middle),
+                          new Sweep(size_, seed_, reports_, jobs_, printed_, failure_, middle, to_));
+                return;
+            };
+            try {
+                simulateNetwork(from_);
+            } catch (IOException exc) {
+                synchronized (failure_) {
+                    if (failure_[0] == null) {
+                        failure_[0] = exc;
+                    };
+                }
+            };
+        }
+
+        /**
+         * Let every workstation of network #i print a document on a printer
+         * picked at random, then broadcast, with the hops summarized.
+         */
+        private void simulateNetwork(int i) throws IOException {
+            Random random = new Random(seed_ + i);
+            Network network = NetworkBuilder.randomRing(size_, workstationRatio(i), printerRatio(i),
+                                                        seed_ + i).build();
+            network.setSummarizeHops_(true);
+            Writer report = new ReportSink(new OutputStreamWriter(new FileOutputStream(reports_[i]), "UTF-8"),
+                                           1 << 16);
+
+            try {
+                // the builder names the nodes after their position
+                String[] printers = new String[size_];
+                int printerCount = 0;
+                for (int j = 0; j < size_; j++) {
+                    if (network.hasPrinter("pr" + j)) {
+                        printers[printerCount++] = "pr" + j;
+                    };
+                };
+                for (int j = 0; j < size_; j++) {
+                    if (network.hasWorkstation("ws" + j)) {
+                        jobs_[i]++;
+                        if (network.requestWorkstationPrintsDocument("ws" + j, "Hello World",
+                                printers[random.nextInt(printerCount)], report)) {
+                            printed_[i]++;
+                        };
+                    };
+                };
+                network.requestBroadcast(report);
+            } finally {
+                report.close();
+            };
+        }
+    }
+
     public static void main (String args[]) {
 
 	if (args.length <= 0) {
-            System.out.println("Usage: t(est) | s(imulate) nrOfIterations '");	    
+            System.out.println("Usage: t(est) | s(imulate) nrOfIterations | p(arallel) nrOfNetworks [size [seed]]'");
         } else if (args[0].equals("t")) {//'test' command
             doRegressionTests();
         } else if (args[0].equals("s")) {//'simulate' command
-	    Integer nrOfIters = new Integer(1);
+	    Integer nrOfIters = Integer.valueOf(1);
 	    if (args.length > 1) {
-		nrOfIters = new Integer(args[1]);
+		nrOfIters = Integer.valueOf(args[1]);
 	    };
 
             for (int i = 0; i < nrOfIters.intValue(); i++) {
                 simulate();
             }
+        } else if (args[0].equals("p") && (args.length > 1)) {//'parallel' command
+	    int size = (args.length > 2) ? Integer.parseInt(args[2]) : 100;
+	    long seed = (args.length > 3) ? Long.parseLong(args[3]) : 0;
+	    Writer out = new BufferedWriter(new OutputStreamWriter(System.out), 1 << 16);
+	    try {
+		simulateParallel(Integer.parseInt(args[1]), size, seed, ForkJoinPool.commonPool(), out);
+	    } catch (IOException exc) {
+		System.err.println(exc);
+		System.exit(1);
+	    };
         } else {//unknown commaND
             System.out.print("Unknown command to LANSimulation: '");
             System.out.print(args[0]);
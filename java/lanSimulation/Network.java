@@ -1,406 +1,1569 @@
-/*   This file is part of lanSimulation.
- *
- *   lanSimulation is free software; you can redistribute it and/or modify
- *   it under the terms of the GNU General Public License as published by
- *   the Free Software Foundation; either version 2 of the License, or
- *   (at your option) any later version.
- *
- *   lanSimulation is distributed in the hope that it will be useful,
- *   but WITHOUT ANY WARRANTY; without even the implied warranty of
- *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
- *   GNU General Public License for more details.
- *
- *   You should have received a copy of the GNU General Public License
- *   along with lanSimulation; if not, write to the Free Software
- *   Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
- *
- *   Copyright original Java version: 2004 Bart Du Bois, Serge Demeyer
- *   Copyright C++ version: 2006 Matthias Rieger, Bart Van Rompaey
- */
-package lanSimulation;
-
-import lanSimulation.internals.*;
-import java.util.Hashtable;
-import java.util.Enumeration;
-import java.io.*;
-
-/**
- * A <em>Network</em> represents the basic data stucture for simulating a Local
- * Area Network (LAN). The LAN network architecture is a token ring, implying
- * that packahes will be passed from one node to another, until they reached
- * their destination, or until they travelled the whole token ring.
- */
-public class Network {
-	/**
-	 * Holds a pointer to myself. Used to verify whether I am properly
-	 * initialized.
-	 */
-	private Network initPtr_;
-	/**
-	 * Holds a pointer to some "first" node in the token ring. Used to ensure
-	 * that various printing operations return expected behaviour.
-	 */
-	private Node firstNode_;
-	/**
-	 * Maps the names of workstations on the actual workstations. Used to
-	 * initiate the requests for the network.
-	 */
-	private Hashtable workstations_;
-
-	/**
-	 * Construct a <em>Network</em> suitable for holding #size Workstations.
-	 * <p>
-	 * <strong>Postcondition:</strong>(result.isInitialized()) & (!
-	 * result.consistentNetwork());
-	 * </p>
-	 */
-	public Network(int size) {
-		assert size > 0;
-		initPtr_ = this;
-		firstNode_ = null;
-		workstations_ = new Hashtable(size, 1.0f);
-		assert isInitialized();
-		assert !consistentNetwork();
-	}
-
-	/**
-	 * Return a <em>Network</em> that may serve as starting point for various
-	 * experiments. Currently, the network looks as follows.
-	 * 
-	 * <pre>
-	 *     Workstation Filip [Workstation] -> Node -> Workstation Hans [Workstation]
-	 *     -> Printer Andy [Printer] -> ...
-	 * </pre>
-	 * <p>
-	 * <strong>Postcondition:</strong>result.isInitialized() &
-	 * result.consistentNetwork();
-	 * </p>
-	 */
-	public static Network DefaultExample() {
-		Network network = new Network(2);
-
-		Node wsFilip = new Node(Node.WORKSTATION, "Filip");
-		Node n1 = new Node(Node.NODE, "n1");
-		Node wsHans = new Node(Node.WORKSTATION, "Hans");
-		Node prAndy = new Node(Node.PRINTER, "Andy");
-
-		wsFilip.setNextNode_(n1);
-		n1.setNextNode_(wsHans);
-		wsHans.setNextNode_(prAndy);
-		prAndy.setNextNode_(wsFilip);
-
-		network.workstations_.put(wsFilip.getName_(), wsFilip);
-		network.workstations_.put(wsHans.getName_(), wsHans);
-		network.firstNode_ = wsFilip;
-
-		assert network.isInitialized();
-		assert network.consistentNetwork();
-		return network;
-	}
-
-	/**
-	 * Answer whether #receiver is properly initialized.
-	 */
-	public boolean isInitialized() {
-		return (initPtr_ == this);
-	};
-
-	/**
-	 * Answer whether #receiver contains a workstation with the given name.
-	 * <p>
-	 * <strong>Precondition:</strong>this.isInitialized();
-	 * </p>
-	 */
-	public boolean hasWorkstation(String ws) {
-		// return workstations_.containsKey(ws);
-		Node n;
-
-		assert isInitialized();
-		n = (Node) workstations_.get(ws);
-		if (n == null) {
-			return false;
-		} else {
-			return n.getType_() == Node.WORKSTATION;
-		}
-	};
-
-	/**
-	 * Answer whether #receiver is a consistent token ring network. A consistent
-	 * token ring network - contains at least one workstation and one printer -
-	 * is circular - all registered workstations are on the token ring - all
-	 * workstations on the token ring are registered.
-	 * <p>
-	 * <strong>Precondition:</strong>this.isInitialized();
-	 * </p>
-	 */
-	public boolean consistentNetwork() {
-		assert isInitialized();
-		Enumeration iter;
-		Node currentNode;
-		int printersFound = 0, workstationsFound = 0;
-		Hashtable encountered = new Hashtable(workstations_.size() * 2, 1.0f);
-
-		if (workstations_.isEmpty()) {
-			return false;
-		}
-		;
-		if (firstNode_ == null) {
-			return false;
-		}
-		;
-		// verify whether all registered workstations are indeed workstations
-		iter = workstations_.elements();
-		while (iter.hasMoreElements()) {
-			currentNode = (Node) iter.nextElement();
-			if (currentNode.getType_() != Node.WORKSTATION) {
-				return false;
-			}
-			;
-		}
-		;
-		// enumerate the token ring, verifying whether all workstations are
-		// registered
-		// also count the number of printers and see whether the ring is
-		// circular
-		currentNode = firstNode_;
-		while (!encountered.containsKey(currentNode.getName_())) {
-			encountered.put(currentNode.getName_(), currentNode);
-			if (currentNode.getType_() == Node.WORKSTATION) {
-				workstationsFound++;
-			}
-			;
-			if (currentNode.getType_() == Node.PRINTER) {
-				printersFound++;
-			}
-			;
-			currentNode = currentNode.getNextNode_();
-		}
-		;
-		if (currentNode != firstNode_) {
-			return false;
-		}
-		;// not circular
-		if (printersFound == 0) {
-			return false;
-		}
-		;// does not contain a printer
-		if (workstationsFound != workstations_.size()) {
-			return false;
-		}
-		; // not all workstations are registered
-		// all verifications succeedeed
-		return true;
-	}
-
-	/**
-	 * The #receiver is requested to broadcast a message to all nodes. Therefore
-	 * #receiver sends a special broadcast packet across the token ring network,
-	 * which should be treated by all nodes.
-	 * <p>
-	 * <strong>Precondition:</strong> consistentNetwork();
-	 * </p>
-	 * 
-	 * @param report
-	 *            Stream that will hold a report about what happened when
-	 *            handling the request.
-	 * @return Anwer #true when the broadcast operation was succesful and #false
-	 *         otherwise
-	 */
-	public boolean requestBroadcast(Writer report) {
-		assert consistentNetwork();
-
-		try {
-			report.write("Broadcast Request\n");
-		} catch (IOException exc) {
-			// just ignore
-		}
-		;
-
-		Node currentNode = firstNode_;
-		Packet packet = new Packet("BROADCAST", firstNode_.getName_(),
-				firstNode_.getName_());
-		do {
-			currentNode.reportBroadcast(report,true);
-			currentNode = currentNode.getNextNode_();
-		} while (!atDestination(currentNode, packet));
-
-		try {
-			report.write(">>> Broadcast travelled whole token ring.\n\n");
-		} catch (IOException exc) {
-			// just ignore
-		}
-		;
-		return true;
-	}
-
-	/**
-	 * The #receiver is requested by #workstation to print #document on
-	 * #printer. Therefore #receiver sends a packet across the token ring
-	 * network, until either (1) #printer is reached or (2) the packet travelled
-	 * complete token ring.
-	 * <p>
-	 * <strong>Precondition:</strong> consistentNetwork() &
-	 * hasWorkstation(workstation);
-	 * </p>
-	 * 
-	 * @param workstation
-	 *            Name of the workstation requesting the service.
-	 * @param document
-	 *            Contents that should be printed on the printer.
-	 * @param printer
-	 *            Name of the printer that should receive the document.
-	 * @param report
-	 *            Stream that will hold a report about what happened when
-	 *            handling the request.
-	 * @return Anwer #true when the print operation was succesful and #false
-	 *         otherwise
-	 */
-	public boolean requestWorkstationPrintsDocument(String workstation,
-			String document, String printer, Writer report) {
-
-		assert consistentNetwork() && hasWorkstation(workstation);
-
-		try {
-			report.write("'");
-			report.write(workstation);
-			report.write("' requests printing of '");
-			report.write(document);
-			report.write("' on '");
-			report.write(printer);
-			report.write("' ...\n");
-		} catch (IOException exc) {
-			// just ignore
-		}
-		;
-
-		boolean result = false;
-		Node startNode, currentNode;
-		Packet packet = new Packet(document, workstation, printer);
-
-		startNode = (Node) workstations_.get(workstation);
-
-		if (startNode != null) {
-
-				startNode.reportBroadcast(report,false);
-
-			currentNode = startNode.getNextNode_();
-			while ((!atDestination(currentNode, packet))
-					& (!packet.getOrigin_().equals(currentNode.getName_()))) {
-				
-					currentNode.reportBroadcast(report,false);
-
-				currentNode = currentNode.getNextNode_();
-			}
-			;
-
-			if (atDestination(currentNode, packet)) {
-				result = printDocument(currentNode, packet, report);
-			} else {
-				try {
-					report.write(">>> Destinition not found, print job cancelled.\n\n");
-					report.flush();
-				} catch (IOException exc) {
-					// just ignore
-				}
-				;
-				result = false;
-			}
-		}else{
-			return false;
-		}
-
-		return result;
-	}
-
-	private boolean atDestination(Node currentNode, Packet packet) {
-		return packet.getDestination_().equals(currentNode.getName_());
-	}
-
-	private boolean printDocument(Node printer, Packet document, Writer report) {
-		if (printer.getType_() == Node.PRINTER) {
-			try {
-				document.printDocument(report);
-			} catch (IOException exc) {
-				// just ignore
-			}
-			;
-			return true;
-		} else {
-			try {
-				report.write(">>> Destinition is not a printer, print job cancelled.\n\n");
-				report.flush();
-			} catch (IOException exc) {
-				// just ignore
-			}
-			;
-			return false;
-		}
-	}
-
-	/**
-	 * Return a printable representation of #receiver.
-	 * <p>
-	 * <strong>Precondition:</strong> isInitialized();
-	 * </p>
-	 */
-	public String toString() {
-		assert isInitialized();
-		StringBuffer buf = new StringBuffer(30 * workstations_.size());
-		printOn(buf);
-		return buf.toString();
-	}
-
-	/**
-	 * Write a printable representation of #receiver on the given #buf.
-	 * <p>
-	 * <strong>Precondition:</strong> isInitialized();
-	 * </p>
-	 */
-	public void printOn(StringBuffer buf) {
-		assert isInitialized();
-		Node currentNode = firstNode_;
-		do {
-			currentNode.print(buf);
-			currentNode = currentNode.getNextNode_();
-		} while (currentNode != firstNode_);
-		buf.append(" ... ");
-	}
-
-	/**
-	 * Write a HTML representation of #receiver on the given #buf.
-	 * <p>
-	 * <strong>Precondition:</strong> isInitialized();
-	 * </p>
-	 */
-	public void printHTMLOn(StringBuffer buf) {
-		assert isInitialized();
-
-		buf.append("<HTML>\n<HEAD>\n<TITLE>LAN Simulation</TITLE>\n</HEAD>\n<BODY>\n<H1>LAN SIMULATION</H1>");
-		Node currentNode = firstNode_;
-		buf.append("\n\n<UL>");
-		do {
-			currentNode.printHTML(buf);
-			currentNode = currentNode.getNextNode_();
-		} while (currentNode != firstNode_);
-		buf.append("\n\t<LI>...</LI>\n</UL>\n\n</BODY>\n</HTML>\n");
-	}
-
-	/**
-	 * Write an XML representation of #receiver on the given #buf.
-	 * <p>
-	 * <strong>Precondition:</strong> isInitialized();
-	 * </p>
-	 */
-	public void printXMLOn(StringBuffer buf) {
-		assert isInitialized();
-
-		Node currentNode = firstNode_;
-		buf.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n\n<network>");
-		do {
-			currentNode.printXML(buf);
-			currentNode = currentNode.getNextNode_();
-		} while (currentNode != firstNode_);
-		buf.append("\n</network>");
-	}
-
-}
+/*   This file is part of lanSimulation.
+ *
+ *   lanSimulation is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *
+ *   lanSimulation is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with lanSimulation; if not, write to the Free Software
+ *   Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ *   Copyright original Java version: 2004 Bart Du Bois, Serge Demeyer
+ *   Copyright C++ version: 2006 Matthias Rieger, Bart Van Rompaey
+ */
+package lanSimulation;
+
+import lanSimulation.internals.*;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A <em>Network</em> represents the basic data stucture for simulating a Local
+ * Area Network (LAN). The LAN network architecture is a token ring, implying
+ * that packahes will be passed from one node to another, until they reached
+ * their destination, or until they travelled the whole token ring.
+ */
+public class Network {
+	/**
+	 * Number of characters the print operations collect before passing them on
+	 * to their target.
+	 */
+	public static final int CHUNK_SIZE = 1 << 13;
+	/**
+	 * Number of characters of renderings a Network retains by default.
+	 */
+	public static final int DEFAULT_RENDER_CACHE_LIMIT = 1 << 22;
+	//enumeration constants specifying the renderings of a network
+	private static final int TEXT = 0;
+	private static final int HTML = 1;
+	private static final int XML = 2;
+
+	/**
+	 * Holds a pointer to myself. Used to verify whether I am properly
+	 * initialized.
+	 */
+	private Network initPtr_;
+	/**
+	 * Holds a pointer to some "first" node in the token ring. Used to ensure
+	 * that various printing operations return expected behaviour. Only used
+	 * while holding #writeLock_.
+	 */
+	private Node firstNode_;
+	/**
+	 * Maps the names of workstations on the actual workstations. Used to
+	 * initiate the requests for the network. Read without locking; replaced
+	 * as a whole by #reconfigure(Edit).
+	 */
+	private volatile ConcurrentHashMap<String, Node> workstations_;
+	/**
+	 * Holds the topology of a compact network, whose nodes are not Node
+	 * objects. Null for a network of Node objects, which derives its topology
+	 * from #firstNode_.
+	 */
+	private volatile Topology topology_;
+	/**
+	 * Serializes the writers of #receiver: #reconfigure(), the edits of the
+	 * token ring and the threads rebuilding a stale index or verdict. Requests
+	 * take it only to rebuild what #topologyChanged() made stale; after
+	 * #reconfigure() and the edits they never do.
+	 */
+	private final Object writeLock_;
+	/**
+	 * Counts the changes to the topology of the token ring. Incremented by
+	 * #topologyChanged(); everything derived from the topology is cached
+	 * against it.
+	 */
+	private final AtomicInteger topologyVersion_;
+	/**
+	 * Holds the position of every node on the token ring, counted from
+	 * #firstNode_. Used to route packets without walking the ring. Published
+	 * by #reconfigure() and the edits for the topology version it records,
+	 * and rebuilt lazily after #topologyChanged(); being immutable, it is
+	 * shared by all threads without locking.
+	 */
+	private volatile RingIndex ringIndex_;
+	/**
+	 * Holds the outcome of the last #consistentNetwork() verification in its
+	 * low int, and the topology version it is valid for in its high int, so
+	 * that both are read and written at once.
+	 */
+	private volatile long verdict_;
+	/**
+	 * When set, print jobs addressed to a node that is not on the token ring
+	 * or is not a printer are cancelled at submission, without reporting the
+	 * packet travelling the ring.
+	 * <p>
+	 * The settings below are read by concurrent requests without locking:
+	 * they are volatile, so that a request sees the last setting and the
+	 * fully built EventLog or Pipeline it refers to, and every request reads
+	 * each of them once, so that it runs with one setting throughout.
+	 * </p>
+	 */
+	private volatile boolean rejectMisaddressed_;
+	/**
+	 * When set, reports collapse the nodes passing a packet on into a single
+	 * range line, keeping only the first and last of them in full.
+	 */
+	private volatile boolean summarizeHops_;
+	/**
+	 * Holds the log recording the events of all requests as binary events, or
+	 * null when no events are captured.
+	 */
+	private volatile EventLog eventLog_;
+	/**
+	 * Holds the pipeline print jobs are transferred through as fragments, or
+	 * null when documents travel as a single packet.
+	 */
+	private volatile Pipeline pipeline_;
+	/**
+	 * Maps the renderings (TEXT, HTML or XML) of #receiver on their text,
+	 * least recently used first. Valid for the topology version in
+	 * #renderedVersion_, so every new version empties it, the edits of
+	 * #insertAfter(), #remove() and #replace() included: an edit shifts the
+	 * text of all nodes after the edited one, and splicing it into a cached
+	 * String copies the whole rendering anyway. The cache and the fields below
+	 * are guarded by the monitor of #renders_, which requests never take.
+	 */
+	private LinkedHashMap<Integer, String> renders_;
+	private int renderedVersion_;
+	/**
+	 * Holds the number of characters in #renders_, and the number of
+	 * characters it may hold.
+	 */
+	private int renderedChars_;
+	private int renderCacheLimit_;
+
+	/**
+	 * Construct a <em>Network</em> suitable for holding #size Workstations.
+	 * <p>
+	 * <strong>Postcondition:</strong>(result.isInitialized()) & (!
+	 * result.consistentNetwork());
+	 * </p>
+	 */
+	public Network(int size) {
+		assert size > 0;
+		initPtr_ = this;
+		firstNode_ = null;
+		workstations_ = new ConcurrentHashMap<String, Node>(size, 1.0f);
+		topology_ = null;
+		topologyVersion_ = new AtomicInteger(0);
+		writeLock_ = new Object();
+		ringIndex_ = null;
+		verdict_ = verdict(-1, RingVerifier.EMPTY);
+		rejectMisaddressed_ = false;
+		summarizeHops_ = false;
+		eventLog_ = null;
+		pipeline_ = null;
+		renders_ = new LinkedHashMap<Integer, String>(4, 0.75f, true);
+		renderedVersion_ = -1;
+		renderedChars_ = 0;
+		renderCacheLimit_ = DEFAULT_RENDER_CACHE_LIMIT;
+		assert isInitialized();
+		assert !consistentNetwork();
+	}
+
+	/**
+	 * Construct a <em>Network</em> on the token ring starting at #firstNode,
+	 * with the given #workstations registered. Used by NetworkBuilder, which
+	 * has linked and registered the nodes already.
+	 */
+	Network(Node firstNode, ConcurrentHashMap<String, Node> workstations) {
+		initPtr_ = this;
+		firstNode_ = firstNode;
+		workstations_ = workstations;
+		topology_ = null;
+		topologyVersion_ = new AtomicInteger(0);
+		writeLock_ = new Object();
+		ringIndex_ = null;
+		verdict_ = verdict(-1, RingVerifier.EMPTY);
+		rejectMisaddressed_ = false;
+		summarizeHops_ = false;
+		eventLog_ = null;
+		pipeline_ = null;
+		renders_ = new LinkedHashMap<Integer, String>(4, 0.75f, true);
+		renderedVersion_ = -1;
+		renderedChars_ = 0;
+		renderCacheLimit_ = DEFAULT_RENDER_CACHE_LIMIT;
+		assert isInitialized();
+	}
+
+	/**
+	 * Construct a compact <em>Network</em> on the given #topology. The
+	 * workstations of #topology are its registered workstations. Behaves like
+	 * a network of Node objects, but only holds the arrays of #topology.
+	 * <p>
+	 * <strong>Postcondition:</strong>result.isInitialized();
+	 * </p>
+	 */
+	public Network(Topology topology) {
+		assert topology != null;
+		initPtr_ = this;
+		firstNode_ = null;
+		workstations_ = null;
+		topology_ = topology;
+		topologyVersion_ = new AtomicInteger(0);
+		writeLock_ = new Object();
+		ringIndex_ = null;
+		verdict_ = verdict(-1, RingVerifier.EMPTY);
+		rejectMisaddressed_ = false;
+		summarizeHops_ = false;
+		eventLog_ = null;
+		pipeline_ = null;
+		renders_ = new LinkedHashMap<Integer, String>(4, 0.75f, true);
+		renderedVersion_ = -1;
+		renderedChars_ = 0;
+		renderCacheLimit_ = DEFAULT_RENDER_CACHE_LIMIT;
+		assert isInitialized();
+	}
+
+	/**
+	 * Open the topology file #file (as written by #writeTopologyOn(File)) and
+	 * return a compact <em>Network</em> reading its nodes from a memory
+	 * mapping of #file.
+	 * <p>
+	 * <strong>Postcondition:</strong>result.isInitialized();
+	 * </p>
+	 */
+	public static Network open(File file) throws IOException {
+		return new Network(new MappedTopology(file));
+	}
+
+	/**
+	 * Read a token ring in JSON (as written by #printJSONOn(Appendable)) from
+	 * #in and return a compact <em>Network</em> holding it.
+	 * <p>
+	 * <strong>Postcondition:</strong>result.isInitialized();
+	 * </p>
+	 */
+	public static Network readJSON(Reader in) throws IOException {
+		return new Network(TopologyFormat.readJSON(in));
+	}
+
+	/**
+	 * Read a token ring in the binary format (as written by
+	 * #writeBinaryOn(OutputStream)) from #in and return a compact
+	 * <em>Network</em> holding it.
+	 * <p>
+	 * <strong>Postcondition:</strong>result.isInitialized();
+	 * </p>
+	 */
+	public static Network readBinary(InputStream in) throws IOException {
+		return new Network(TopologyFormat.readBinary(in));
+	}
+
+	/**
+	 * Return a <em>Network</em> that may serve as starting point for various
+	 * experiments. Currently, the network looks as follows.
+	 * 
+	 * <pre>
+	 *     Workstation Filip [Workstation] -> Node -> Workstation Hans [Workstation]
+	 *     -> Printer Andy [Printer] -> ...
+	 * </pre>
+	 * <p>
+	 * <strong>Postcondition:</strong>result.isInitialized() &
+	 * result.consistentNetwork();
+	 * </p>
+	 */
+	public static Network DefaultExample() {
+		Network network = new NetworkBuilder(4).addWorkstation("Filip")
+				.addNode("n1").addWorkstation("Hans").addPrinter("Andy").build();
+
+		assert network.isInitialized();
+		assert network.consistentNetwork();
+		return network;
+	}
+
+	/**
+	 * Answer whether #receiver is properly initialized.
+	 */
+	public boolean isInitialized() {
+		return (initPtr_ == this);
+	};
+
+	/**
+	 * An <em>Edit</em> changes a copy of the token ring of a Network of Node
+	 * objects, for #reconfigure(Edit).
+	 */
+	public interface Edit {
+		/**
+		 * Add, remove or relink nodes of the token ring starting at
+		 * #firstNode, keeping #workstations, which maps the names of the
+		 * registered workstations on their nodes, up to date. Answer the
+		 * first node of the edited token ring.
+		 */
+		Node apply(Node firstNode, Map<String, Node> workstations);
+	}
+
+	/**
+	 * Let #edit change a copy of the token ring of #receiver and of its
+	 * registered workstations, then verify the copy and, when it is
+	 * consistent, publish it with its ring-position index and verdict at
+	 * once. Requests in flight, and requests started before the copy is
+	 * published, keep using the snapshot they started on, so they neither
+	 * wait for #edit nor see a half-edited ring. Concurrent reconfigurations
+	 * are applied one after the other. Meant for edits that #insertAfter(),
+	 * #remove() and #replace() cannot express, as the token ring is copied
+	 * and verified again.
+	 * <p>
+	 * <strong>Precondition:</strong>this.consistentNetwork() & (topology_ ==
+	 * null);
+	 * </p>
+	 * 
+	 * @return #false, leaving #receiver unchanged, when the edited token ring
+	 *         is not consistent; #true otherwise
+	 */
+	public boolean reconfigure(Edit edit) {
+		assert consistentNetwork();
+		assert topology_ == null;
+		synchronized (writeLock_) {
+			RingIndex current = (RingIndex) topology();
+			int size = current.size();
+			ConcurrentHashMap<String, Node> workstations = new ConcurrentHashMap<String, Node>(
+					Math.max(1, current.workstationCount()), 1.0f);
+			// copy the nodes back to front, so each one is linked on creation
+			Node lastNode = new Node(current.typeOf(size - 1),
+					current.nameOf(size - 1));
+			Node node = lastNode;
+			for (int id = size - 1; id >= 0; id--) {
+				if (id < size - 1) {
+					node = new Node(current.typeOf(id), current.nameOf(id), node);
+				}
+				;
+				if (node.getType_() == Node.WORKSTATION) {
+					workstations.put(node.getName_(), node);
+				}
+				;
+			}
+			;
+			lastNode.setNextNode_(node);
+
+			Node firstNode = edit.apply(node, workstations);
+			if (verifyRing(firstNode, workstations) != RingVerifier.CONSISTENT) {
+				return false;
+			}
+			;
+			RingIndex index = new RingIndex(firstNode, current.getVersion_() + 1);
+			if (index.hasDuplicateNames()) {
+				return false;
+			}
+			;
+			firstNode_ = firstNode;
+			workstations_ = workstations;
+			publishEdit(index);
+		}
+		return true;
+	}
+
+	/**
+	 * Replace the topology of a compact #receiver by #topology, publishing it
+	 * and its consistency verdict at once. Requests in flight keep using the
+	 * topology they started on.
+	 * <p>
+	 * <strong>Precondition:</strong>this.isInitialized() & (topology_ != null);
+	 * </p>
+	 */
+	public void reconfigure(Topology topology) {
+		assert isInitialized();
+		assert (topology_ != null) & (topology != null);
+		synchronized (writeLock_) {
+			topology_ = topology;
+			publish(topologyVersion_.get() + 1);
+		}
+	}
+
+	/**
+	 * Publish the consistency verdict and, for a consistent network of Node
+	 * objects, the ring-position index for topology #version, then the version
+	 * itself. Called while holding #writeLock_.
+	 */
+	private void publish(int version) {
+		int violation = verifyNetwork(version);
+		if ((topology_ == null) && (violation == RingVerifier.CONSISTENT)) {
+			RingIndex index = ringIndex_;
+			if ((index == null) || (index.getVersion_() != version)) {
+				ringIndex_ = new RingIndex(firstNode_, version);
+			}
+			;
+		}
+		;
+		verdict_ = verdict(version, violation);
+		topologyVersion_.set(version);
+	}
+
+	/**
+	 * Inform #receiver that nodes have been added, removed or relinked, so
+	 * that the ring-position index and the consistency verdict are recomputed
+	 * before the next request. Only safe while no requests are running; use
+	 * #reconfigure(Edit) to change the token ring under load.
+	 * <p>
+	 * <strong>Precondition:</strong>this.isInitialized();
+	 * </p>
+	 */
+	public void topologyChanged() {
+		assert isInitialized();
+		synchronized (writeLock_) {
+			topologyVersion_.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Insert a new node of #type named #name on the token ring, right after
+	 * the node named #anchor. A new workstation is registered once it is on
+	 * the ring. Costs O(RingIndex.BLOCK_SIZE + n / RingIndex.BLOCK_SIZE) for
+	 * a ring of n nodes: the ring-position index of the new ring is derived
+	 * from the current one and published together with the edit, so requests
+	 * never rebuild it.
+	 * <p>
+	 * <strong>Precondition:</strong>this.consistentNetwork() & (topology_ ==
+	 * null);
+	 * </p>
+	 * 
+	 * @return #false, leaving #receiver unchanged, when #type is not NODE,
+	 *         WORKSTATION or PRINTER, there is no node #anchor or there is a
+	 *         node #name already; #true otherwise
+	 */
+	public boolean insertAfter(String anchor, byte type, String name) {
+		assert consistentNetwork();
+		assert topology_ == null;
+		synchronized (writeLock_) {
+			RingIndex index = (RingIndex) topology();
+			int position = index.idOf(anchor);
+			if (!isNodeType(type) || (position < 0) || (index.idOf(name) >= 0)) {
+				return false;
+			}
+			;
+			Node previous = index.nodeAt(position);
+			Node node = new Node(type, name, previous.getNextNode_());
+			previous.setNextNode_(node);
+			publishEdit(index.inserted(position, node, index.getVersion_() + 1));
+			if (type == Node.WORKSTATION) {
+				workstations_.put(name, node);
+			}
+			;
+		}
+		return true;
+	}
+
+	/**
+	 * Remove the node named #name from the token ring. A removed workstation
+	 * is unregistered before it leaves the ring. Costs and publishes like
+	 * #insertAfter().
+	 * <p>
+	 * <strong>Precondition:</strong>this.consistentNetwork() & (topology_ ==
+	 * null);
+	 * </p>
+	 * 
+	 * @return #false, leaving #receiver unchanged, when there is no node
+	 *         #name or it is the last printer or the last workstation; #true
+	 *         otherwise
+	 */
+	public boolean remove(String name) {
+		assert consistentNetwork();
+		assert topology_ == null;
+		synchronized (writeLock_) {
+			RingIndex index = (RingIndex) topology();
+			int position = index.idOf(name);
+			if ((position < 0)
+					|| !keepsConsistent(index, index.typeOf(position), Node.NODE)) {
+				return false;
+			}
+			;
+			Node node = index.nodeAt(position);
+			if (node.getType_() == Node.WORKSTATION) {
+				workstations_.remove(name);
+			}
+			;
+			Node previous = index.nodeAt((position == 0) ? index.size() - 1
+					: position - 1);
+			previous.setNextNode_(node.getNextNode_());
+			if (node == firstNode_) {
+				firstNode_ = node.getNextNode_();
+			}
+			;
+			publishEdit(index.removed(position, index.getVersion_() + 1));
+		}
+		return true;
+	}
+
+	/**
+	 * Replace the node named #name by a new node of #type named #newName, at
+	 * the same position on the token ring. Registers and unregisters
+	 * workstations like #insertAfter() and #remove(). Costs and publishes
+	 * like #insertAfter().
+	 * <p>
+	 * <strong>Precondition:</strong>this.consistentNetwork() & (topology_ ==
+	 * null);
+	 * </p>
+	 * 
+	 * @return #false, leaving #receiver unchanged, when #type is not NODE,
+	 *         WORKSTATION or PRINTER, there is no node #name, there is a node
+	 *         #newName other than node #name, or node #name is the last
+	 *         printer or the last workstation and #type differs; #true
+	 *         otherwise
+	 */
+	public boolean replace(String name, byte type, String newName) {
+		assert consistentNetwork();
+		assert topology_ == null;
+		synchronized (writeLock_) {
+			RingIndex index = (RingIndex) topology();
+			int position = index.idOf(name);
+			if (!isNodeType(type) || (position < 0)
+					|| (!newName.equals(name) && (index.idOf(newName) >= 0))
+					|| !keepsConsistent(index, index.typeOf(position), type)) {
+				return false;
+			}
+			;
+			Node old = index.nodeAt(position);
+			if (old.getType_() == Node.WORKSTATION) {
+				workstations_.remove(name);
+			}
+			;
+			Node node = new Node(type, newName, old.getNextNode_());
+			Node previous = index.nodeAt((position == 0) ? index.size() - 1
+					: position - 1);
+			previous.setNextNode_(node);
+			if (old == firstNode_) {
+				firstNode_ = node;
+			}
+			;
+			publishEdit(index.replaced(position, node, index.getVersion_() + 1));
+			if (type == Node.WORKSTATION) {
+				workstations_.put(newName, node);
+			}
+			;
+		}
+		return true;
+	}
+
+	/**
+	 * Answer whether #type is one of the node types NODE, WORKSTATION and
+	 * PRINTER.
+	 */
+	private static boolean isNodeType(byte type) {
+		return (type >= Node.NODE) & (type <= Node.PRINTER);
+	}
+
+	/**
+	 * Answer whether turning a node of #oldType on the token ring of #index
+	 * into one of #newType leaves a printer and a workstation on it.
+	 */
+	private static boolean keepsConsistent(RingIndex index, byte oldType,
+			byte newType) {
+		if (oldType == newType) {
+			return true;
+		}
+		;
+		if (oldType == Node.PRINTER) {
+			return index.printerCount() > 1;
+		}
+		;
+		if (oldType == Node.WORKSTATION) {
+			return index.workstationCount() > 1;
+		}
+		;
+		return true;
+	}
+
+	/**
+	 * Publish #index, the ring-position index of the token ring after an edit
+	 * that kept #receiver consistent, then its topology version with that
+	 * verdict, without verifying the token ring again. Called while holding
+	 * #writeLock_.
+	 */
+	private void publishEdit(RingIndex index) {
+		int version = index.getVersion_();
+		ringIndex_ = index;
+		verdict_ = verdict(version, RingVerifier.CONSISTENT);
+		topologyVersion_.set(version);
+	}
+
+	/**
+	 * Answer the current topology version of #receiver. The version changes
+	 * whenever #topologyChanged() is invoked.
+	 */
+	public int topologyVersion() {
+		return topologyVersion_.get();
+	}
+
+	/**
+	 * Answer the topology of #receiver: either the compact topology it was
+	 * constructed on, or the ring-position index of its Node objects, built
+	 * when the topology changed since it was last used. Both are immutable
+	 * snapshots; a request uses the one it started with from beginning to
+	 * end. Also used by Simulator.
+	 */
+	Topology topology() {
+		Topology topology = topology_;
+		if (topology != null) {
+			return topology;
+		}
+		int version = topologyVersion_.get();
+		RingIndex index = ringIndex_;
+		if ((index == null) || (index.getVersion_() < version)) {
+			synchronized (writeLock_) {
+				version = topologyVersion_.get();
+				index = ringIndex_;
+				if ((index == null) || (index.getVersion_() < version)) {
+					index = new RingIndex(firstNode_, version);
+					ringIndex_ = index;
+				}
+				;
+			}
+		}
+		return index;
+	}
+
+	/**
+	 * Answer whether #receiver contains a workstation with the given name.
+	 * Answered from the snapshot requests use while #receiver is consistent,
+	 * and from the registered workstations otherwise.
+	 * <p>
+	 * <strong>Precondition:</strong>this.isInitialized();
+	 * </p>
+	 */
+	public boolean hasWorkstation(String ws) {
+		// return workstations_.containsKey(ws);
+		Node n;
+
+		assert isInitialized();
+		if ((topology_ != null) || consistentNetwork()) {
+			// answer from the snapshot requests use
+			Topology topology = topology();
+			int id = topology.idOf(ws);
+			return (id >= 0) && (topology.typeOf(id) == Node.WORKSTATION);
+		}
+		n = workstations_.get(ws);
+		if (n == null) {
+			return false;
+		} else {
+			return n.getType_() == Node.WORKSTATION;
+		}
+	};
+
+	/**
+	 * Answer whether #receiver contains a printer with the given name. Answered
+	 * from the ring-position index, which covers all nodes on the token ring.
+	 * <p>
+	 * <strong>Precondition:</strong>this.consistentNetwork();
+	 * </p>
+	 */
+	public boolean hasPrinter(String printer) {
+		assert consistentNetwork();
+		Topology topology = topology();
+		int id = topology.idOf(printer);
+		return (id >= 0) && (topology.typeOf(id) == Node.PRINTER);
+	}
+
+	/**
+	 * Answer whether print jobs to unknown or non-printer destinations are
+	 * cancelled at submission. When they are, the report of such a job lists
+	 * the request and its cancellation but not the nodes passing it on.
+	 */
+	public boolean getRejectMisaddressed_() {
+		return rejectMisaddressed_;
+	}
+
+	/**
+	 * @param rejectMisaddressed_
+	 *            whether print jobs to unknown or non-printer destinations
+	 *            should be cancelled at submission
+	 */
+	public void setRejectMisaddressed_(boolean rejectMisaddressed_) {
+		this.rejectMisaddressed_ = rejectMisaddressed_;
+	}
+
+	/**
+	 * Answer whether reports summarize the nodes passing a packet on. When
+	 * they do, a run of more than three such nodes is reported as its first
+	 * node, a range line for the others, and its last node; request,
+	 * accounting and outcome lines are reported in full.
+	 */
+	public boolean getSummarizeHops_() {
+		return summarizeHops_;
+	}
+
+	/**
+	 * @param summarizeHops_
+	 *            whether reports should summarize the nodes passing a packet
+	 *            on
+	 */
+	public void setSummarizeHops_(boolean summarizeHops_) {
+		this.summarizeHops_ = summarizeHops_;
+	}
+
+	/**
+	 * Answer the log capturing the events of all requests, or #null when no
+	 * events are captured.
+	 */
+	public EventLog getEventLog_() {
+		return eventLog_;
+	}
+
+	/**
+	 * @param eventLog_
+	 *            the log that should capture the events of all requests, or
+	 *            #null to stop capturing them
+	 */
+	public void setEventLog_(EventLog eventLog_) {
+		this.eventLog_ = eventLog_;
+	}
+
+	/**
+	 * Answer the pipeline print jobs are transferred through, or #null when
+	 * every document travels as a single packet.
+	 */
+	public Pipeline getPipeline_() {
+		return pipeline_;
+	}
+
+	/**
+	 * @param pipeline_
+	 *            the pipeline that should transfer print jobs as fragments,
+	 *            reassembled at the printer before accounting, or #null to
+	 *            send every document as a single packet. The pipeline counts
+	 *            every transfer, whether or not the request writes a report.
+	 */
+	public void setPipeline_(Pipeline pipeline_) {
+		this.pipeline_ = pipeline_;
+	}
+
+	/**
+	 * Answer the number of characters of renderings #receiver retains. The
+	 * text, HTML and XML renderings are computed once per topology version;
+	 * when they do not fit together, the least recently used ones are
+	 * dropped.
+	 */
+	public int getRenderCacheLimit_() {
+		return renderCacheLimit_;
+	}
+
+	/**
+	 * @param renderCacheLimit_
+	 *            the number of characters of renderings that should be
+	 *            retained, 0 to retain none
+	 */
+	public void setRenderCacheLimit_(int renderCacheLimit_) {
+		assert renderCacheLimit_ >= 0;
+		synchronized (renders_) {
+			this.renderCacheLimit_ = renderCacheLimit_;
+			evictRenderings();
+		}
+	}
+
+	/**
+	 * Answer whether #receiver is a consistent token ring network. A consistent
+	 * token ring network - contains at least one workstation and one printer -
+	 * is circular - all registered workstations are on the token ring - all
+	 * workstations on the token ring are registered - no two nodes have the
+	 * same name. The verdict is cached
+	 * until the next #topologyChanged(), so preconditions checking it do not
+	 * walk the ring on every request.
+	 * <p>
+	 * <strong>Precondition:</strong>this.isInitialized();
+	 * </p>
+	 */
+	public boolean consistentNetwork() {
+		return consistencyViolation() == RingVerifier.CONSISTENT;
+	}
+
+	/**
+	 * Answer why #receiver is not a consistent token ring network, as one of
+	 * the outcomes enumerated in RingVerifier (RingVerifier.CONSISTENT when
+	 * it is consistent). Cached like #consistentNetwork().
+	 * <p>
+	 * <strong>Precondition:</strong>this.isInitialized();
+	 * </p>
+	 */
+	public int consistencyViolation() {
+		assert isInitialized();
+		int version = topologyVersion_.get();
+		long verdict = verdict_;
+		if ((int) (verdict >>> 32) < version) {
+			synchronized (writeLock_) {
+				version = topologyVersion_.get();
+				verdict = verdict_;
+				if ((int) (verdict >>> 32) < version) {
+					verdict = verdict(version, verifyNetwork(version));
+					verdict_ = verdict;
+				}
+				;
+			}
+		}
+		return (int) verdict;
+	}
+
+	private static long verdict(int version, int violation) {
+		return ((long) version << 32) | (violation & 0xFFFFFFFFL);
+	}
+
+	private int verifyNetwork(int version) {
+		if (topology_ != null) {
+			if (topology_.workstationCount() == 0) {
+				return RingVerifier.EMPTY;
+			}
+			;
+			return RingVerifier.verify(topology_, topology_.workstationCount());
+		}
+		;
+		int violation = verifyRing(firstNode_, workstations_);
+		if ((violation != RingVerifier.CONSISTENT)
+				&& (violation != RingVerifier.UNREGISTERED_WORKSTATION)) {
+			return violation;
+		}
+		;
+		// index the circular ring, in parallel segments when it is large; the
+		// index finds duplicate names and serves the requests of #version. As
+		// for a Topology, a duplicate name is reported before the workstation
+		// count, since workstations sharing a name share a registry entry.
+		RingIndex index = ringIndex_;
+		if ((index == null) || (index.getVersion_() != version)) {
+			index = new RingIndex(firstNode_, version);
+		}
+		;
+		if (index.hasDuplicateNames()) {
+			return RingVerifier.DUPLICATE_NAME;
+		}
+		;
+		if (violation != RingVerifier.CONSISTENT) {
+			return violation;
+		}
+		;
+		ringIndex_ = index;
+		return RingVerifier.CONSISTENT;
+	}
+
+	/**
+	 * Verify the token ring starting at #firstNode against the registered
+	 * #workstations, all but the uniqueness of its names, which needs the
+	 * ring-position index.
+	 */
+	private static int verifyRing(Node firstNode, Map<String, Node> workstations) {
+		Iterator<Node> iter;
+		Node currentNode;
+
+		if (workstations.isEmpty()) {
+			return RingVerifier.EMPTY;
+		}
+		;
+		if (firstNode == null) {
+			return RingVerifier.EMPTY;
+		}
+		;
+		// verify whether all registered workstations are indeed workstations
+		iter = workstations.values().iterator();
+		while (iter.hasNext()) {
+			currentNode = iter.next();
+			if (currentNode.getType_() != Node.WORKSTATION) {
+				return RingVerifier.NOT_A_WORKSTATION;
+			}
+			;
+		}
+		;
+		// enumerate the token ring, verifying whether all workstations are
+		// registered, whether it contains a printer and whether it is circular
+		return RingVerifier.verify(firstNode, workstations.size());
+	}
+
+	/**
+	 * The #receiver is requested to broadcast a message to all nodes. Therefore
+	 * #receiver sends a special broadcast packet across the token ring network,
+	 * which should be treated by all nodes.
+	 * <p>
+	 * <strong>Precondition:</strong> consistentNetwork();
+	 * </p>
+	 * 
+	 * @param report
+	 *            Stream that will hold a report about what happened when
+	 *            handling the request, or #null when no report is needed.
+	 * @return Anwer #true when the broadcast operation was succesful and #false
+	 *         otherwise
+	 */
+	public boolean requestBroadcast(Writer report) {
+		assert consistentNetwork();
+
+		EventLog log = eventLog_;
+		if ((report == null) && (log == null)) {
+			return true; // every node accepts a broadcast
+		}
+		;
+
+		Topology topology = topology();
+		String first = topology.nameOf(topology.firstId());
+		Packet packet = new Packet("BROADCAST", first, first);
+		packet.setOriginId_(topology.firstId());
+		packet.setDestinationId_(topology.firstId());
+		int packetId = (log != null) ? log.startPacket(packet, topology) : -1;
+
+		if (report != null) {
+			try {
+				report.write("Broadcast Request\n");
+			} catch (IOException exc) {
+				// just ignore
+			}
+			;
+		}
+		;
+		if (log != null) {
+			log.record(EventLog.BROADCAST_REQUEST, packet.getOriginId_(), packetId);
+		}
+		;
+
+		boolean summarize = summarizeHops_;
+		Writer hopReport = summarize ? null : report;
+		EventLog hopLog = summarize ? null : log;
+		if (summarize && (report != null)) {
+			Node.reportHops(report, topology, packet.getOriginId_(), topology.size(), true);
+		}
+		;
+		if (summarize && (log != null)) {
+			log.record(EventLog.BROADCAST_HOPS_SUMMARIZED, packet.getOriginId_(), packetId);
+		}
+		;
+		if ((hopReport != null) || (hopLog != null)) {
+			int currentId = packet.getOriginId_();
+			do {
+				if (hopReport != null) {
+					Node.reportBroadcast(hopReport, topology.nameOf(currentId), true);
+				}
+				;
+				if (hopLog != null) {
+					hopLog.record(EventLog.BROADCAST_HOP, currentId, packetId);
+				}
+				;
+				currentId = topology.nextOf(currentId);
+			} while (currentId != packet.getDestinationId_());
+		}
+		;
+
+		if (report != null) {
+			try {
+				report.write(">>> Broadcast travelled whole token ring.\n\n");
+				report.flush();
+			} catch (IOException exc) {
+				// just ignore
+			}
+			;
+		}
+		;
+		if (log != null) {
+			log.record(EventLog.BROADCAST_DONE, -1, packetId);
+		}
+		;
+		return true;
+	}
+
+	/**
+	 * The #receiver is requested by #workstation to print #document on
+	 * #printer. Therefore #receiver sends a packet across the token ring
+	 * network, until either (1) #printer is reached or (2) the packet travelled
+	 * complete token ring. The ring-position index resolves the names into
+	 * node ids up front and decides where the packet ends up; the ring is only
+	 * walked to write the per-hop report.
+	 * <p>
+	 * <strong>Precondition:</strong> consistentNetwork() &
+	 * hasWorkstation(workstation);
+	 * </p>
+	 * 
+	 * @param workstation
+	 *            Name of the workstation requesting the service.
+	 * @param document
+	 *            Contents that should be printed on the printer.
+	 * @param printer
+	 *            Name of the printer that should receive the document.
+	 * @param report
+	 *            Stream that will hold a report about what happened when
+	 *            handling the request, or #null when no report is needed.
+	 * @return Anwer #true when the print operation was succesful and #false
+	 *         otherwise
+	 */
+	public boolean requestWorkstationPrintsDocument(String workstation,
+			String document, String printer, Writer report) {
+
+		assert consistentNetwork() && hasWorkstation(workstation);
+
+		boolean result = printRequest(topology(), new Packet(document,
+				workstation, printer), report);
+		flushReport(report);
+		return result;
+	}
+
+	/**
+	 * The #receiver is requested to print a batch of jobs, job i asking
+	 * workstation #workstations[i] to print #documents[i] on printer
+	 * #printers[i]. The jobs are served in the given order, and the report is
+	 * the same as when each job were requested with
+	 * #requestWorkstationPrintsDocument. As every job is routed through the
+	 * ring-position index, serving the batch costs O(jobs) plus the hops
+	 * written to the report.
+	 * <p>
+	 * <strong>Precondition:</strong> consistentNetwork() & (workstations.length
+	 * == documents.length) & (documents.length == printers.length) & every
+	 * workstation satisfies hasWorkstation();
+	 * </p>
+	 * 
+	 * @param workstations
+	 *            Names of the workstations requesting the jobs.
+	 * @param documents
+	 *            Documents to print; they are carried without being copied.
+	 * @param printers
+	 *            Names of the printers the jobs are addressed to.
+	 * @param report
+	 *            Stream that will hold a report about what happened when
+	 *            handling the request, or #null when no report is needed.
+	 * @return For every job, #true when its print operation was succesful and
+	 *         #false otherwise
+	 */
+	public boolean[] requestPrintJobs(String[] workstations,
+			CharSequence[] documents, String[] printers, Writer report) {
+		assert (workstations.length == documents.length)
+				& (documents.length == printers.length);
+		Packet[] jobs = new Packet[workstations.length];
+		for (int i = 0; i < jobs.length; i++) {
+			jobs[i] = new Packet(documents[i], workstations[i], printers[i]);
+		}
+		;
+		return printJobs(jobs, report);
+	}
+
+	/**
+	 * Serve #jobs as #requestPrintJobs(), each of them a packet holding the
+	 * document as message, the requesting workstation as origin and the
+	 * printer as destination. Resolves the origin and destination ids of the
+	 * packets, so it is only used for packets the caller does not share.
+	 * <p>
+	 * <strong>Precondition:</strong> consistentNetwork() & the origin of
+	 * every job satisfies hasWorkstation();
+	 * </p>
+	 */
+	boolean[] printJobs(Packet[] jobs, Writer report) {
+		assert consistentNetwork();
+
+		Topology topology = topology();
+		boolean[] results = new boolean[jobs.length];
+		for (int i = 0; i < jobs.length; i++) {
+			assert hasWorkstation(jobs[i].getOrigin_());
+			results[i] = printRequest(topology, jobs[i], report);
+		}
+		;
+		flushReport(report);
+		return results;
+	}
+
+	/**
+	 * Flush #report, if any, at the end of a request. Reports are flushed once
+	 * per request rather than per hop, so a buffering Writer such as a
+	 * ReportSink passes each request on to its target in one piece.
+	 */
+	private void flushReport(Writer report) {
+		if (report != null) {
+			try {
+				report.flush();
+			} catch (IOException exc) {
+				// just ignore
+			}
+			;
+		}
+		;
+	}
+
+	/**
+	 * Deliver #packet from the workstation named by its origin to the printer
+	 * named by its destination on #topology, writing what happens on #report
+	 * when it is not #null.
+	 */
+	private boolean printRequest(Topology topology, Packet packet, Writer report) {
+		EventLog log = eventLog_;
+		int packetId = (log != null) ? log.startPacket(packet, topology) : -1;
+
+		if (report != null) {
+			try {
+				report.write("'");
+				report.write(packet.getOrigin_());
+				report.write("' requests printing of '");
+				packet.printMessage(report);
+				report.write("' on '");
+				report.write(packet.getDestination_());
+				report.write("' ...\n");
+			} catch (IOException exc) {
+				// just ignore
+			}
+			;
+		}
+		;
+		if (log != null) {
+			log.record(EventLog.PRINT_REQUEST, -1, packetId);
+		}
+		;
+
+		int originId = topology.idOf(packet.getOrigin_());
+		if ((originId < 0) || (topology.typeOf(originId) != Node.WORKSTATION)) {
+			return false;
+		}
+		;
+
+		packet.setOriginId_(originId);
+		packet.setDestinationId_(topology.idOf(packet.getDestination_()));
+		boolean misaddressed = (packet.getDestinationId_() < 0)
+				|| (topology.typeOf(packet.getDestinationId_()) != Node.PRINTER);
+		boolean rejected = rejectMisaddressed_ && misaddressed;
+
+		boolean summarize = summarizeHops_;
+		Writer hopReport = summarize ? null : report;
+		EventLog hopLog = summarize ? null : log;
+		if (summarize && (report != null) && !rejected) {
+			Node.reportHops(report, topology, packet.getOriginId_(), topology
+					.hopsBetween(packet.getOriginId_(), packet.getDestinationId_()), false);
+		}
+		;
+		if (summarize && (log != null) && !rejected) {
+			log.record(EventLog.HOPS_SUMMARIZED, packet.getOriginId_(), packetId);
+		}
+		;
+		boolean reached = true;
+		if (((hopReport != null) || (hopLog != null)) && !rejected) {
+			int currentId = packet.getOriginId_();
+			do {
+				if (hopReport != null) {
+					Node.reportBroadcast(hopReport, topology.nameOf(currentId), false);
+				}
+				;
+				if (hopLog != null) {
+					hopLog.record(EventLog.HOP, currentId, packetId);
+				}
+				;
+				currentId = topology.nextOf(currentId);
+			} while ((currentId != packet.getDestinationId_())
+					& (currentId != packet.getOriginId_()));
+			// a destination the packet went round the ring without passing is
+			// not on the token ring
+			reached = (currentId == packet.getDestinationId_());
+		}
+		;
+
+		if ((packet.getDestinationId_() >= 0) && reached) {
+			return printDocument(topology.typeOf(packet.getDestinationId_()),
+					packet, report, log, packetId, topology);
+		} else {
+			if (report != null) {
+				try {
+					report.write(">>> Destinition not found, print job cancelled.\n\n");
+				} catch (IOException exc) {
+					// just ignore
+				}
+				;
+			}
+			;
+			if (log != null) {
+				log.record(EventLog.NOT_FOUND, -1, packetId);
+			}
+			;
+			return false;
+		}
+	}
+
+	/**
+	 * Deliver #document on a printer of type #printerType, recording it as
+	 * packet #packetId of #log unless #log is null. The hops between its
+	 * origin and destination on #topology are only counted when the document
+	 * travels through the pipeline.
+	 */
+	private boolean printDocument(byte printerType, Packet document,
+			Writer report, EventLog log, int packetId, Topology topology) {
+		Pipeline pipeline = pipeline_;
+		if (printerType == Node.PRINTER) {
+			if (pipeline != null) {
+				int hops = topology.hopsBetween(document.getOriginId_(),
+						document.getDestinationId_());
+				CharSequence[] fragments = pipeline.split(document.getPayload_());
+				long steps = pipeline.transfer(fragments, hops);
+				Packet reassembled = new Packet(pipeline.reassemble(fragments),
+						document.getOrigin_(), document.getDestination_());
+				reassembled.setOriginId_(document.getOriginId_());
+				reassembled.setDestinationId_(document.getDestinationId_());
+				document = reassembled;
+				if (report != null) {
+					pipeline.reportTransfer(report, fragments.length, hops, steps);
+				}
+				;
+				if (log != null) {
+					log.recordTransfer(pipeline, steps, document.getDestinationId_(), packetId);
+				}
+				;
+			}
+			;
+			if (report != null) {
+				try {
+					document.printDocument(report);
+				} catch (IOException exc) {
+					// just ignore
+				}
+				;
+			}
+			;
+			if (log != null) {
+				log.record(EventLog.DELIVERED, document.getDestinationId_(), packetId);
+			}
+			;
+			return true;
+		} else {
+			if (report != null) {
+				try {
+					report.write(">>> Destinition is not a printer, print job cancelled.\n\n");
+				} catch (IOException exc) {
+					// just ignore
+				}
+				;
+			}
+			;
+			if (log != null) {
+				log.record(EventLog.NOT_A_PRINTER, document.getDestinationId_(), packetId);
+			}
+			;
+			return false;
+		}
+	}
+
+	/**
+	 * Write the topology of #receiver on #file, in the binary format read by
+	 * #open(File).
+	 * <p>
+	 * <strong>Precondition:</strong> consistentNetwork();
+	 * </p>
+	 */
+	public void writeTopologyOn(File file) throws IOException {
+		assert consistentNetwork();
+		MappedTopology.write(topology(), file);
+	}
+
+	/**
+	 * Write a JSON representation of #receiver on #out, in ring order starting
+	 * at the "first" node and in chunks of about CHUNK_SIZE characters.
+	 * <p>
+	 * <strong>Precondition:</strong> consistentNetwork();
+	 * </p>
+	 */
+	public void printJSONOn(Appendable out) throws IOException {
+		assert consistentNetwork();
+		TopologyFormat.writeJSON(topology(), out);
+	}
+
+	/**
+	 * Write the topology of #receiver on #out in the compact binary format of
+	 * TopologyFormat, read by #readBinary(InputStream).
+	 * <p>
+	 * <strong>Precondition:</strong> consistentNetwork();
+	 * </p>
+	 */
+	public void writeBinaryOn(OutputStream out) throws IOException {
+		assert consistentNetwork();
+		TopologyFormat.writeBinary(topology(), out);
+	}
+
+	/**
+	 * Return a printable representation of #receiver.
+	 * <p>
+	 * <strong>Precondition:</strong> isInitialized();
+	 * </p>
+	 */
+	public String toString() {
+		assert isInitialized();
+		return rendering(TEXT, true);
+	}
+
+	/**
+	 * Write a printable representation of #receiver on the given #buf.
+	 * <p>
+	 * <strong>Precondition:</strong> isInitialized();
+	 * </p>
+	 */
+	public void printOn(StringBuffer buf) {
+		try {
+			printOn((Appendable) buf);
+		} catch (IOException exc) {
+			// a StringBuffer does not throw
+		}
+		;
+	}
+
+	/**
+	 * Write a printable representation of #receiver on #out. The text is
+	 * passed on in chunks of about CHUNK_SIZE characters, so printing a huge
+	 * token ring on a Writer takes constant memory. Renderings fitting the
+	 * render cache are computed once per topology version.
+	 * <p>
+	 * <strong>Precondition:</strong> isInitialized();
+	 * </p>
+	 */
+	public void printOn(Appendable out) throws IOException {
+		assert isInitialized();
+		String text = rendering(TEXT, false);
+		if (text != null) {
+			out.append(text);
+		} else {
+			renderOn(out);
+		}
+		;
+	}
+
+	private void renderOn(Appendable out) throws IOException {
+		Topology topology = topology();
+		StringBuilder chunk = new StringBuilder(CHUNK_SIZE + 64);
+		int currentId = topology.firstId();
+		do {
+			Node.print(chunk, topology.typeOf(currentId), topology.nameOf(currentId));
+			passOn(chunk, out, CHUNK_SIZE);
+			currentId = topology.nextOf(currentId);
+		} while (currentId != topology.firstId());
+		chunk.append(" ... ");
+		passOn(chunk, out, 0);
+	}
+
+	/**
+	 * Write a printable representation of #receiver on #channel, UTF-8
+	 * encoded, in chunks of about CHUNK_SIZE bytes.
+	 * <p>
+	 * <strong>Precondition:</strong> isInitialized();
+	 * </p>
+	 */
+	public void printOn(WritableByteChannel channel) throws IOException {
+		Writer out = channelWriter(channel);
+		printOn(out);
+		out.flush();
+	}
+
+	/**
+	 * Write a HTML representation of #receiver on the given #buf.
+	 * <p>
+	 * <strong>Precondition:</strong> isInitialized();
+	 * </p>
+	 */
+	public void printHTMLOn(StringBuffer buf) {
+		try {
+			printHTMLOn((Appendable) buf);
+		} catch (IOException exc) {
+			// a StringBuffer does not throw
+		}
+		;
+	}
+
+	/**
+	 * Write a HTML representation of #receiver on #out, in chunks of about
+	 * CHUNK_SIZE characters, or in one piece from the render cache when it
+	 * fits there.
+	 * <p>
+	 * <strong>Precondition:</strong> isInitialized();
+	 * </p>
+	 */
+	public void printHTMLOn(Appendable out) throws IOException {
+		assert isInitialized();
+		String text = rendering(HTML, false);
+		if (text != null) {
+			out.append(text);
+		} else {
+			renderHTMLOn(out);
+		}
+		;
+	}
+
+	private void renderHTMLOn(Appendable out) throws IOException {
+
+		StringBuilder chunk = new StringBuilder(CHUNK_SIZE + 64);
+		chunk.append("<HTML>\n<HEAD>\n<TITLE>LAN Simulation</TITLE>\n</HEAD>\n<BODY>\n<H1>LAN SIMULATION</H1>");
+		Topology topology = topology();
+		int currentId = topology.firstId();
+		chunk.append("\n\n<UL>");
+		do {
+			Node.printHTML(chunk, topology.typeOf(currentId), topology.nameOf(currentId));
+			passOn(chunk, out, CHUNK_SIZE);
+			currentId = topology.nextOf(currentId);
+		} while (currentId != topology.firstId());
+		chunk.append("\n\t<LI>...</LI>\n</UL>\n\n</BODY>\n</HTML>\n");
+		passOn(chunk, out, 0);
+	}
+
+	/**
+	 * Write a HTML representation of #receiver on #channel, UTF-8 encoded, in
+	 * chunks of about CHUNK_SIZE bytes.
+	 * <p>
+	 * <strong>Precondition:</strong> isInitialized();
+	 * </p>
+	 */
+	public void printHTMLOn(WritableByteChannel channel) throws IOException {
+		Writer out = channelWriter(channel);
+		printHTMLOn(out);
+		out.flush();
+	}
+
+	/**
+	 * Write an XML representation of #receiver on the given #buf.
+	 * <p>
+	 * <strong>Precondition:</strong> isInitialized();
+	 * </p>
+	 */
+	public void printXMLOn(StringBuffer buf) {
+		try {
+			printXMLOn((Appendable) buf);
+		} catch (IOException exc) {
+			// a StringBuffer does not throw
+		}
+		;
+	}
+
+	/**
+	 * Write an XML representation of #receiver on #out, in chunks of about
+	 * CHUNK_SIZE characters, or in one piece from the render cache when it
+	 * fits there.
+	 * <p>
+	 * <strong>Precondition:</strong> isInitialized();
+	 * </p>
+	 */
+	public void printXMLOn(Appendable out) throws IOException {
+		assert isInitialized();
+		String text = rendering(XML, false);
+		if (text != null) {
+			out.append(text);
+		} else {
+			renderXMLOn(out);
+		}
+		;
+	}
+
+	private void renderXMLOn(Appendable out) throws IOException {
+
+		Topology topology = topology();
+		int currentId = topology.firstId();
+		StringBuilder chunk = new StringBuilder(CHUNK_SIZE + 64);
+		chunk.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n\n<network>");
+		do {
+			Node.printXML(chunk, topology.typeOf(currentId), topology.nameOf(currentId));
+			passOn(chunk, out, CHUNK_SIZE);
+			currentId = topology.nextOf(currentId);
+		} while (currentId != topology.firstId());
+		chunk.append("\n</network>");
+		passOn(chunk, out, 0);
+	}
+
+	/**
+	 * Write an XML representation of #receiver on #channel, UTF-8 encoded, in
+	 * chunks of about CHUNK_SIZE bytes.
+	 * <p>
+	 * <strong>Precondition:</strong> isInitialized();
+	 * </p>
+	 */
+	public void printXMLOn(WritableByteChannel channel) throws IOException {
+		Writer out = channelWriter(channel);
+		printXMLOn(out);
+		out.flush();
+	}
+
+	/**
+	 * Answer the #format rendering of #receiver from the render cache,
+	 * rendering and retaining it when it is missing. When the rendering would
+	 * not fit in the cache, answer it uncached if #force, #null otherwise.
+	 */
+	private String rendering(int format, boolean force) {
+		int version = topologyVersion_.get();
+		Integer key = Integer.valueOf(format);
+		String text;
+		int limit;
+		synchronized (renders_) {
+			if (renderedVersion_ != version) {
+				renders_.clear();
+				renderedChars_ = 0;
+				renderedVersion_ = version;
+			}
+			;
+			text = renders_.get(key);
+			limit = renderCacheLimit_;
+		}
+		if (text != null) {
+			return text;
+		}
+		;
+		// every node takes at least 16 characters in any rendering
+		long minimumSize = 16L * topology().size();
+		if ((minimumSize > limit) & !force) {
+			return null;
+		}
+		;
+		StringBuilder buf = new StringBuilder((int) Math.min(2 * minimumSize, 1 << 30));
+		try {
+			switch (format) {
+			case TEXT:
+				renderOn(buf);
+				break;
+			case HTML:
+				renderHTMLOn(buf);
+				break;
+			default:
+				renderXMLOn(buf);
+				break;
+			}
+			;
+		} catch (IOException exc) {
+			// a StringBuilder does not throw
+		}
+		;
+		text = buf.toString();
+		synchronized (renders_) {
+			if ((renderedVersion_ == version) && (text.length() <= renderCacheLimit_)
+					&& !renders_.containsKey(key)) {
+				renders_.put(key, text);
+				renderedChars_ += text.length();
+				evictRenderings();
+			}
+			;
+		}
+		return text;
+	}
+
+	/**
+	 * Drop the least recently used renderings until the render cache fits
+	 * #renderCacheLimit_. Called while holding the monitor of #renders_.
+	 */
+	private void evictRenderings() {
+		Iterator<String> entries = renders_.values().iterator();
+		while (renderedChars_ > renderCacheLimit_) {
+			renderedChars_ -= entries.next().length();
+			entries.remove();
+		}
+		;
+	}
+
+	/**
+	 * Pass #chunk on to #out and empty it, once it holds at least #threshold
+	 * characters.
+	 */
+	private static void passOn(StringBuilder chunk, Appendable out,
+			int threshold) throws IOException {
+		if ((chunk.length() >= threshold) & (chunk.length() > 0)) {
+			out.append(chunk);
+			chunk.setLength(0);
+		}
+		;
+	}
+
+	/**
+	 * Answer a Writer encoding UTF-8 on #channel through a buffer of
+	 * CHUNK_SIZE bytes. The Writer is flushed but not closed, so #channel
+	 * stays open.
+	 */
+	private static Writer channelWriter(WritableByteChannel channel) {
+		return Channels.newWriter(channel, StandardCharsets.UTF_8.newEncoder(),
+				CHUNK_SIZE);
+	}
+
+}
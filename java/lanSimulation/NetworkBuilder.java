@@ -0,0 +1,251 @@
+/*   This file is part of lanSimulation.
+ *
+ *   lanSimulation is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *
+ *   lanSimulation is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with lanSimulation; if not, write to the Free Software
+ *   Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ *   Copyright original Java version: 2004 Bart Du Bois, Serge Demeyer
+ *   Copyright C++ version: 2006 Matthias Rieger, Bart Van Rompaey
+ */
+package lanSimulation;
+
+import lanSimulation.internals.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.Random;
+
+/**
+ * A <em>NetworkBuilder</em> assembles a token ring from nodes appended in ring
+ * order. The nodes are collected in presized arrays; #build() creates, links
+ * and registers all of them in a single pass and verifies the result once.
+ */
+public class NetworkBuilder {
+	/**
+	 * Holds the types of the appended nodes, in ring order.
+	 */
+	private byte[] types_;
+	/**
+	 * Holds the names of the appended nodes, in ring order.
+	 */
+	private String[] names_;
+	/**
+	 * Holds the number of appended nodes.
+	 */
+	private int size_;
+	/**
+	 * Holds the number of appended workstations.
+	 */
+	private int workstationCount_;
+
+	/**
+	 * Construct a <em>NetworkBuilder</em> with room for #capacity nodes. The
+	 * storage grows when more nodes are appended.
+	 * <p>
+	 * <strong>Precondition:</strong> capacity > 0;
+	 * </p>
+	 */
+	public NetworkBuilder(int capacity) {
+		assert capacity > 0;
+		types_ = new byte[capacity];
+		names_ = new String[capacity];
+		size_ = 0;
+		workstationCount_ = 0;
+	}
+
+	/**
+	 * Return a <em>NetworkBuilder</em> holding a ring of #size nodes with
+	 * random types: each node is a workstation with probability
+	 * #workstationRatio, a printer with probability #printerRatio and a plain
+	 * node otherwise. The first node is always a workstation and the ring
+	 * always holds a printer. Workstations are named "ws" + position, printers
+	 * "pr" + position and other nodes "n" + position. The same #seed yields the
+	 * same ring.
+	 * <p>
+	 * <strong>Precondition:</strong> (size >= 2) & (workstationRatio >= 0) &
+	 * (printerRatio >= 0) & (workstationRatio + printerRatio <= 1);
+	 * </p>
+	 */
+	public static NetworkBuilder randomRing(int size, double workstationRatio,
+			double printerRatio, long seed) {
+		assert (size >= 2) & (workstationRatio >= 0) & (printerRatio >= 0)
+				& (workstationRatio + printerRatio <= 1);
+		Random random = new Random(seed);
+		byte[] types = new byte[size];
+		boolean printerFound = false;
+
+		types[0] = Node.WORKSTATION;
+		for (int i = 1; i < size; i++) {
+			double r = random.nextDouble();
+			if (r < workstationRatio) {
+				types[i] = Node.WORKSTATION;
+			} else if (r < workstationRatio + printerRatio) {
+				types[i] = Node.PRINTER;
+				printerFound = true;
+			} else {
+				types[i] = Node.NODE;
+			}
+			;
+		}
+		;
+		if (!printerFound) {
+			types[1 + random.nextInt(size - 1)] = Node.PRINTER;
+		}
+		;
+
+		NetworkBuilder builder = new NetworkBuilder(size);
+		for (int i = 0; i < size; i++) {
+			switch (types[i]) {
+			case Node.WORKSTATION:
+				builder.add(Node.WORKSTATION, "ws" + i);
+				break;
+			case Node.PRINTER:
+				builder.add(Node.PRINTER, "pr" + i);
+				break;
+			default:
+				builder.add(Node.NODE, "n" + i);
+				break;
+			}
+			;
+		}
+		;
+		return builder;
+	}
+
+	/**
+	 * Append a node with given #type and #name to the token ring.
+	 * <p>
+	 * <strong>Precondition:</strong> (type >= Node.NODE) & (type <=
+	 * Node.PRINTER);
+	 * </p>
+	 */
+	public NetworkBuilder add(byte type, String name) {
+		assert (type >= Node.NODE) & (type <= Node.PRINTER);
+		if (size_ == types_.length) {
+			byte[] types = new byte[size_ * 2];
+			String[] names = new String[size_ * 2];
+			System.arraycopy(types_, 0, types, 0, size_);
+			System.arraycopy(names_, 0, names, 0, size_);
+			types_ = types;
+			names_ = names;
+		}
+		;
+		types_[size_] = type;
+		names_[size_] = name;
+		size_++;
+		if (type == Node.WORKSTATION) {
+			workstationCount_++;
+		}
+		;
+		return this;
+	}
+
+	/**
+	 * Append a workstation named #name to the token ring.
+	 */
+	public NetworkBuilder addWorkstation(String name) {
+		return add(Node.WORKSTATION, name);
+	}
+
+	/**
+	 * Append a printer named #name to the token ring.
+	 */
+	public NetworkBuilder addPrinter(String name) {
+		return add(Node.PRINTER, name);
+	}
+
+	/**
+	 * Append a plain node named #name to the token ring.
+	 */
+	public NetworkBuilder addNode(String name) {
+		return add(Node.NODE, name);
+	}
+
+	/**
+	 * Answer the number of nodes appended so far.
+	 */
+	public int size() {
+		return size_;
+	}
+
+	/**
+	 * Return a <em>Network</em> of Node objects holding the appended nodes,
+	 * the first one appended being its "first" node. When several appended
+	 * workstations have the same name, only the first of them is registered,
+	 * and the network reports DUPLICATE_NAME.
+	 * <p>
+	 * <strong>Precondition:</strong> size() > 0;
+	 * </p>
+	 * <p>
+	 * <strong>Postcondition:</strong>result.isInitialized() &
+	 * (result.consistentNetwork() | (result.consistencyViolation() ==
+	 * RingVerifier.DUPLICATE_NAME));
+	 * </p>
+	 */
+	public Network build() {
+		assert size_ > 0;
+		ConcurrentHashMap<String, Node> workstations = new ConcurrentHashMap<String, Node>(
+				Math.max(1, workstationCount_), 1.0f);
+		// create the nodes back to front, so each one is linked on creation
+		Node lastNode = new Node(types_[size_ - 1], names_[size_ - 1]);
+		Node node = lastNode;
+		for (int i = size_ - 1; i >= 0; i--) {
+			if (i < size_ - 1) {
+				node = new Node(types_[i], names_[i], node);
+			}
+			;
+			if (node.getType_() == Node.WORKSTATION) {
+				workstations.put(node.getName_(), node);
+			}
+			;
+		}
+		;
+		lastNode.setNextNode_(node);
+
+		Network network = new Network(node, workstations);
+		assert network.consistentNetwork()
+				|| (network.consistencyViolation() == RingVerifier.DUPLICATE_NAME);
+		return network;
+	}
+
+	/**
+	 * Return a compact <em>Network</em> holding the appended nodes, stored in a
+	 * CompactTopology rather than as Node objects. The network reports
+	 * DUPLICATE_NAME when several appended nodes have the same name.
+	 * <p>
+	 * <strong>Precondition:</strong> size() > 0;
+	 * </p>
+	 * <p>
+	 * <strong>Postcondition:</strong>result.isInitialized() &
+	 * (result.consistentNetwork() | (result.consistencyViolation() ==
+	 * RingVerifier.DUPLICATE_NAME));
+	 * </p>
+	 */
+	public Network buildCompact() {
+		assert size_ > 0;
+		byte[] types = new byte[size_];
+		String[] names = new String[size_];
+		int[] next = new int[size_];
+
+		System.arraycopy(types_, 0, types, 0, size_);
+		System.arraycopy(names_, 0, names, 0, size_);
+		for (int i = 0; i < size_ - 1; i++) {
+			next[i] = i + 1;
+		}
+		;
+		next[size_ - 1] = 0;
+
+		Network network = new Network(new CompactTopology(types, names, next, 0));
+		assert network.consistentNetwork()
+				|| (network.consistencyViolation() == RingVerifier.DUPLICATE_NAME);
+		return network;
+	}
+}
@@ -0,0 +1,435 @@
+/*   This file is part of lanSimulation.
+ *
+ *   lanSimulation is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *
+ *   lanSimulation is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with lanSimulation; if not, write to the Free Software
+ *   Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ *   Copyright original Java version: 2004 Bart Du Bois, Serge Demeyer
+ *   Copyright C++ version: 2006 Matthias Rieger, Bart Van Rompaey
+ */
+package lanSimulation;
+
+import lanSimulation.internals.*;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A <em>Simulator</em> runs requests on a Network as a discrete-event
+ * simulation with simulated time. A packet takes #hopLatency_ time units per
+ * hop, so several packets may be on the token ring at once. A workstation only
+ * sends a packet while it holds the single token: the token travels from the
+ * node that released it to the next workstation waiting to send, in ring
+ * order, at the same speed as packets, and is released #transmitTime_ time
+ * units after the packet left. An idle token waits at the node that released
+ * it.
+ * <p>
+ * A print request or broadcast submitted on its own writes exactly the report
+ * Network writes for requestWorkstationPrintsDocument() or requestBroadcast()
+ * in full (not summarized) form; packets in flight at the same time
+ * interleave their report lines in the order of simulated time.
+ * </p>
+ */
+public class Simulator {
+	//enumeration constants specifying all event types
+	private static final byte SUBMIT = 0;
+	private static final byte TOKEN_ARRIVED = 1;
+	private static final byte TOKEN_RELEASED = 2;
+	private static final byte HOP = 3;
+	private static final byte ARRIVE = 4;
+	private static final byte BROADCAST_HOP = 5;
+	private static final byte BROADCAST_DONE = 6;
+
+	//enumeration constants specifying the outcome of a packet
+	/**
+	 * The packet is still waiting or travelling.
+	 */
+	public static final byte PENDING = 0;
+	/**
+	 * The packet was printed, or the broadcast travelled the whole ring.
+	 */
+	public static final byte DELIVERED = 1;
+	/**
+	 * The packet was cancelled.
+	 */
+	public static final byte CANCELLED = 2;
+
+	/**
+	 * Holds the snapshot of the token ring the simulation runs on; the
+	 * network may be edited meanwhile.
+	 */
+	private Topology topology_;
+	private long hopLatency_;
+	private long transmitTime_;
+	private EventQueue queue_;
+	/**
+	 * Holds the current simulated time.
+	 */
+	private long now_;
+	/**
+	 * Holds the number of events handled so far.
+	 */
+	private long eventCount_;
+
+	/**
+	 * Hold for every submitted packet: the packet, whether it is a broadcast,
+	 * its outcome and the time it was delivered or cancelled.
+	 */
+	private Packet[] packets_;
+	private boolean[] broadcast_;
+	private byte[] outcomes_;
+	private long[] finishTimes_;
+	private int packetCount_;
+	/**
+	 * Hold for every node the first and last of its packets waiting for the
+	 * token, and for every packet the packet waiting behind it; -1 for none.
+	 */
+	private int[] waitingHead_;
+	private int[] waitingTail_;
+	private int[] waitingNext_;
+	/**
+	 * Maps the ring positions of the nodes with packets waiting for the token
+	 * on their node ids, both as Integers.
+	 */
+	private TreeMap<Integer, Integer> waitingNodes_;
+	/**
+	 * Holds the node the token was last released at, and whether it is held or
+	 * travelling to a waiting node.
+	 */
+	private int tokenNodeId_;
+	private boolean tokenBusy_;
+
+	/**
+	 * Construct a <em>Simulator</em> on the current topology of #network,
+	 * with packets and the token taking #hopLatency time units per hop and a
+	 * workstation holding the token for #transmitTime time units.
+	 * <p>
+	 * <strong>Precondition:</strong> network.consistentNetwork() &
+	 * (hopLatency > 0) & (transmitTime >= 0);
+	 * </p>
+	 */
+	public Simulator(Network network, long hopLatency, long transmitTime) {
+		assert network.consistentNetwork();
+		assert (hopLatency > 0) & (transmitTime >= 0);
+		topology_ = network.topology();
+		hopLatency_ = hopLatency;
+		transmitTime_ = transmitTime;
+		queue_ = new EventQueue(1024);
+		now_ = 0;
+		eventCount_ = 0;
+		packets_ = new Packet[16];
+		broadcast_ = new boolean[16];
+		outcomes_ = new byte[16];
+		finishTimes_ = new long[16];
+		waitingNext_ = new int[16];
+		packetCount_ = 0;
+		waitingHead_ = new int[topology_.size()];
+		waitingTail_ = new int[topology_.size()];
+		for (int id = 0; id < waitingHead_.length; id++) {
+			waitingHead_[id] = -1;
+			waitingTail_[id] = -1;
+		}
+		;
+		waitingNodes_ = new TreeMap<Integer, Integer>();
+		tokenNodeId_ = topology_.firstId();
+		tokenBusy_ = false;
+	}
+
+	/**
+	 * Submit a request of #workstation to print #document on #printer at
+	 * simulated #time, and answer the id of its packet.
+	 * <p>
+	 * <strong>Precondition:</strong> time >= now();
+	 * </p>
+	 */
+	public int submitPrint(long time, String workstation, String document,
+			String printer) {
+		return submit(time, new Packet(document, workstation, printer), false);
+	}
+
+	/**
+	 * Submit a broadcast from the "first" node at simulated #time, and answer
+	 * the id of its packet.
+	 * <p>
+	 * <strong>Precondition:</strong> time >= now();
+	 * </p>
+	 */
+	public int submitBroadcast(long time) {
+		String first = topology_.nameOf(topology_.firstId());
+		return submit(time, new Packet("BROADCAST", first, first), true);
+	}
+
+	private int submit(long time, Packet packet, boolean broadcast) {
+		assert time >= now_;
+		if (packetCount_ == packets_.length) {
+			int capacity = packetCount_ * 2;
+			Packet[] packets = new Packet[capacity];
+			boolean[] broadcasts = new boolean[capacity];
+			byte[] outcomes = new byte[capacity];
+			long[] finishTimes = new long[capacity];
+			int[] waitingNext = new int[capacity];
+			System.arraycopy(packets_, 0, packets, 0, packetCount_);
+			System.arraycopy(broadcast_, 0, broadcasts, 0, packetCount_);
+			System.arraycopy(outcomes_, 0, outcomes, 0, packetCount_);
+			System.arraycopy(finishTimes_, 0, finishTimes, 0, packetCount_);
+			System.arraycopy(waitingNext_, 0, waitingNext, 0, packetCount_);
+			packets_ = packets;
+			broadcast_ = broadcasts;
+			outcomes_ = outcomes;
+			finishTimes_ = finishTimes;
+			waitingNext_ = waitingNext;
+		}
+		;
+		int packetId = packetCount_++;
+		packets_[packetId] = packet;
+		broadcast_[packetId] = broadcast;
+		outcomes_[packetId] = PENDING;
+		finishTimes_[packetId] = -1;
+		waitingNext_[packetId] = -1;
+		queue_.schedule(time, SUBMIT, -1, packetId);
+		return packetId;
+	}
+
+	/**
+	 * Handle all scheduled events, writing what happens on #report when it is
+	 * not #null.
+	 */
+	public void run(Writer report) {
+		run(Long.MAX_VALUE, report);
+	}
+
+	/**
+	 * Handle the scheduled events up to simulated time #until, writing what
+	 * happens on #report when it is not #null.
+	 */
+	public void run(long until, Writer report) {
+		while ((!queue_.isEmpty()) && (queue_.peekTime() <= until)) {
+			queue_.next();
+			now_ = queue_.getTime_();
+			eventCount_++;
+			try {
+				handle(queue_.getType_(), queue_.getNodeId_(), queue_.getPacketId_(),
+						report);
+			} catch (IOException exc) {
+				// just ignore
+			}
+			;
+		}
+		;
+		if (report != null) {
+			try {
+				report.flush();
+			} catch (IOException exc) {
+				// just ignore
+			}
+			;
+		}
+		;
+	}
+
+	private void handle(byte type, int nodeId, int packetId, Writer report)
+			throws IOException {
+		Packet packet = (packetId >= 0) ? packets_[packetId] : null;
+		int nextId;
+		switch (type) {
+		case SUBMIT:
+			if (broadcast_[packetId]) {
+				if (report != null) {
+					report.write("Broadcast Request\n");
+				}
+				;
+				packet.setOriginId_(topology_.firstId());
+				packet.setDestinationId_(topology_.firstId());
+			} else {
+				if (report != null) {
+					report.write("'");
+					report.write(packet.getOrigin_());
+					report.write("' requests printing of '");
+					packet.printMessage(report);
+					report.write("' on '");
+					report.write(packet.getDestination_());
+					report.write("' ...\n");
+				}
+				;
+				int originId = topology_.idOf(packet.getOrigin_());
+				if ((originId < 0)
+						|| (topology_.typeOf(originId) != Node.WORKSTATION)) {
+					finish(packetId, CANCELLED);
+					break;
+				}
+				;
+				packet.setOriginId_(originId);
+				packet.setDestinationId_(topology_.idOf(packet.getDestination_()));
+			}
+			;
+			waitForToken(packetId);
+			if (!tokenBusy_) {
+				passToken(true);
+			}
+			;
+			break;
+		case TOKEN_ARRIVED:
+			packetId = takeWaiting(nodeId);
+			queue_.schedule(now_, broadcast_[packetId] ? BROADCAST_HOP : HOP,
+					nodeId, packetId);
+			queue_.schedule(now_ + transmitTime_, TOKEN_RELEASED, nodeId, -1);
+			break;
+		case TOKEN_RELEASED:
+			tokenNodeId_ = nodeId;
+			tokenBusy_ = false;
+			passToken(false);
+			break;
+		case HOP:
+			if (report != null) {
+				Node.reportBroadcast(report, topology_.nameOf(nodeId), false);
+			}
+			;
+			nextId = topology_.nextOf(nodeId);
+			queue_.schedule(now_ + hopLatency_, ((nextId == packet
+					.getDestinationId_()) | (nextId == packet.getOriginId_())) ? ARRIVE
+					: HOP, nextId, packetId);
+			break;
+		case ARRIVE:
+			if (nodeId != packet.getDestinationId_()) {
+				if (report != null) {
+					report.write(">>> Destinition not found, print job cancelled.\n\n");
+				}
+				;
+				finish(packetId, CANCELLED);
+			} else if (topology_.typeOf(nodeId) == Node.PRINTER) {
+				if (report != null) {
+					packet.printDocument(report);
+				}
+				;
+				finish(packetId, DELIVERED);
+			} else {
+				if (report != null) {
+					report.write(">>> Destinition is not a printer, print job cancelled.\n\n");
+				}
+				;
+				finish(packetId, CANCELLED);
+			}
+			;
+			break;
+		case BROADCAST_HOP:
+			if (report != null) {
+				Node.reportBroadcast(report, topology_.nameOf(nodeId), true);
+			}
+			;
+			nextId = topology_.nextOf(nodeId);
+			queue_.schedule(now_ + hopLatency_,
+					(nextId == packet.getOriginId_()) ? BROADCAST_DONE : BROADCAST_HOP,
+					nextId, packetId);
+			break;
+		case BROADCAST_DONE:
+			if (report != null) {
+				report.write(">>> Broadcast travelled whole token ring.\n\n");
+			}
+			;
+			finish(packetId, DELIVERED);
+			break;
+		default:
+			break;
+		}
+		;
+	}
+
+	private void finish(int packetId, byte outcome) {
+		outcomes_[packetId] = outcome;
+		finishTimes_[packetId] = now_;
+	}
+
+	/**
+	 * Queue packet #packetId at its origin until the token arrives there.
+	 */
+	private void waitForToken(int packetId) {
+		int nodeId = packets_[packetId].getOriginId_();
+		if (waitingHead_[nodeId] < 0) {
+			waitingHead_[nodeId] = packetId;
+			waitingNodes_.put(Integer.valueOf(topology_.positionOf(nodeId)), Integer.valueOf(nodeId));
+		} else {
+			waitingNext_[waitingTail_[nodeId]] = packetId;
+		}
+		;
+		waitingTail_[nodeId] = packetId;
+	}
+
+	private int takeWaiting(int nodeId) {
+		int packetId = waitingHead_[nodeId];
+		waitingHead_[nodeId] = waitingNext_[packetId];
+		if (waitingHead_[nodeId] < 0) {
+			waitingTail_[nodeId] = -1;
+			waitingNodes_.remove(Integer.valueOf(topology_.positionOf(nodeId)));
+		}
+		;
+		return packetId;
+	}
+
+	/**
+	 * Send the idle token to the next node with packets waiting, in ring order
+	 * from #tokenNodeId_. When #idle, the token was not released just now and
+	 * may be taken at #tokenNodeId_ itself without travelling the ring.
+	 */
+	private void passToken(boolean idle) {
+		if (waitingNodes_.isEmpty()) {
+			return;
+		}
+		;
+		int size = topology_.size();
+		int from = topology_.positionOf(tokenNodeId_);
+		Map.Entry<Integer, Integer> waiting = waitingNodes_.ceilingEntry(Integer.valueOf(idle ? from
+				: from + 1));
+		if (waiting == null) {
+			waiting = waitingNodes_.firstEntry();
+		}
+		;
+		int hops = (waiting.getKey().intValue() - from + size) % size;
+		if ((hops == 0) & !idle) {
+			hops = size;
+		}
+		;
+		tokenBusy_ = true;
+		queue_.schedule(now_ + hops * hopLatency_, TOKEN_ARRIVED,
+				waiting.getValue().intValue(), -1);
+	}
+
+	/**
+	 * Answer the current simulated time.
+	 */
+	public long now() {
+		return now_;
+	}
+
+	/**
+	 * Answer the number of events handled so far.
+	 */
+	public long eventCount() {
+		return eventCount_;
+	}
+
+	/**
+	 * Answer the outcome of packet #packetId: PENDING, DELIVERED or CANCELLED.
+	 */
+	public byte outcomeOf(int packetId) {
+		return outcomes_[packetId];
+	}
+
+	/**
+	 * Answer the simulated time packet #packetId was delivered or cancelled,
+	 * or -1 while it is pending.
+	 */
+	public long finishTimeOf(int packetId) {
+		return finishTimes_[packetId];
+	}
+}
@@ -0,0 +1,298 @@
+/*   This file is part of lanSimulation.
+ *
+ *   lanSimulation is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *
+ *   lanSimulation is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with lanSimulation; if not, write to the Free Software
+ *   Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ *   Copyright original Java version: 2004 Bart Du Bois, Serge Demeyer
+ *   Copyright C++ version: 2006 Matthias Rieger, Bart Van Rompaey
+ */
+package lanSimulation;
+
+import lanSimulation.internals.*;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A <em>TokenRing</em> lets many threads submit print jobs to a Network while
+ * the workstations contend for a single token. Every workstation queues its
+ * outbound jobs; only the holder of the token transmits, one job per
+ * workstation it visits, passing the token on in ring order.
+ * <p>
+ * The token is an atomic integer holding the workstation it was released at,
+ * or HELD. A submitting thread that takes it over with compareAndSet passes
+ * it once around the ring for everyone, then releases it and wakes the
+ * submitter of a job still queued, so no thread serves an unbounded stream of
+ * jobs. A thread returns once its own job is transmitted; while the token is
+ * held by another thread it parks. No monitors are used, and the Network and
+ * the report are only used by the holder.
+ * </p>
+ */
+public class TokenRing {
+	/**
+	 * Value of #token_ while some thread holds the token.
+	 */
+	private static final int HELD = -1;
+
+	private final Network network_;
+	private final Writer report_;
+	/**
+	 * Maps the names of the workstations on their index, in ring order from
+	 * the "first" node.
+	 */
+	private final HashMap<String, Integer> stations_;
+	private final String[] stationNames_;
+	/**
+	 * Holds the outbound jobs of every workstation.
+	 */
+	private final JobQueue[] queues_;
+	/**
+	 * Holds the index of the workstation the token waits at, or HELD.
+	 */
+	private final AtomicInteger token_;
+	/**
+	 * Holds the number of submitted jobs not yet transmitted.
+	 */
+	private final AtomicInteger pending_;
+	/**
+	 * Hold for every workstation the number of jobs it transmitted and the
+	 * nanoseconds they waited for the token in total.
+	 */
+	private final AtomicLongArray jobCounts_;
+	private final AtomicLongArray waitTimes_;
+	/**
+	 * Hold the System.nanoTime() of the first submission, the end of the last
+	 * transmission, and the nanoseconds spent transmitting.
+	 */
+	private final AtomicLong startedAt_;
+	private final AtomicLong finishedAt_;
+	private final AtomicLong busyTime_;
+
+	/**
+	 * A job queued at a workstation, with the time it was submitted, the
+	 * thread waiting for it, and whether it was transmitted.
+	 */
+	private static class Job {
+		final Packet packet_;
+		final long submittedAt_;
+		final Thread submitter_;
+		volatile boolean transmitted_;
+
+		Job(Packet packet, long submittedAt, Thread submitter) {
+			packet_ = packet;
+			submittedAt_ = submittedAt;
+			submitter_ = submitter;
+		}
+	}
+
+	/**
+	 * The outbound jobs of a workstation, first submitted first.
+	 */
+	private static class JobQueue extends ConcurrentLinkedQueue<Job> {
+		private static final long serialVersionUID = 1L;
+	}
+
+	/**
+	 * Construct a <em>TokenRing</em> on the current topology of #network,
+	 * writing what happens on #report when it is not #null. The token starts
+	 * at the first workstation.
+	 * <p>
+	 * <strong>Precondition:</strong> network.consistentNetwork();
+	 * </p>
+	 */
+	public TokenRing(Network network, Writer report) {
+		assert network.consistentNetwork();
+		Topology topology = network.topology();
+		network_ = network;
+		report_ = report;
+		stations_ = new HashMap<String, Integer>(topology.workstationCount() * 2);
+		stationNames_ = new String[topology.workstationCount()];
+		int count = 0, currentId = topology.firstId();
+		do {
+			if (topology.typeOf(currentId) == Node.WORKSTATION) {
+				stationNames_[count] = topology.nameOf(currentId);
+				stations_.put(stationNames_[count], Integer.valueOf(count));
+				count++;
+			}
+			;
+			currentId = topology.nextOf(currentId);
+		} while (currentId != topology.firstId());
+		queues_ = new JobQueue[count];
+		for (int i = 0; i < count; i++) {
+			queues_[i] = new JobQueue();
+		}
+		;
+		token_ = new AtomicInteger(0);
+		pending_ = new AtomicInteger(0);
+		jobCounts_ = new AtomicLongArray(count);
+		waitTimes_ = new AtomicLongArray(count);
+		startedAt_ = new AtomicLong(0);
+		finishedAt_ = new AtomicLong(0);
+		busyTime_ = new AtomicLong(0);
+	}
+
+	/**
+	 * Queue a request of #workstation to print #document on #printer.
+	 * <p>
+	 * <strong>Precondition:</strong> hasStation(workstation);
+	 * </p>
+	 */
+	public void submit(String workstation, String document, String printer) {
+		submit(new Packet(document, workstation, printer));
+	}
+
+	/**
+	 * Queue #job at the workstation named by its origin, and return once it is
+	 * transmitted. Whenever the token is free, the calling thread takes it and
+	 * passes it once around the ring; otherwise it waits for the holder.
+	 * <p>
+	 * <strong>Precondition:</strong> hasStation(job.getOrigin_());
+	 * </p>
+	 */
+	public void submit(Packet job) {
+		assert hasStation(job.getOrigin_());
+		int station = stations_.get(job.getOrigin_()).intValue();
+		long now = System.nanoTime();
+		startedAt_.compareAndSet(0, now);
+		Job queued = new Job(job, now, Thread.currentThread());
+		queues_[station].add(queued);
+		pending_.incrementAndGet();
+		while (!queued.transmitted_) {
+			int at = token_.get();
+			if ((at != HELD) && token_.compareAndSet(at, HELD)) {
+				circulateToken(at);
+			} else {
+				LockSupport.park(this);
+			}
+			;
+		}
+		;
+	}
+
+	/**
+	 * Answer whether #receiver has a workstation named #workstation.
+	 */
+	public boolean hasStation(String workstation) {
+		return stations_.containsKey(workstation);
+	}
+
+	/**
+	 * Pass the held token once around the ring from #station, every
+	 * workstation transmitting at most one queued job, and release it there.
+	 * When jobs are still pending, wake the submitter of the first queued one
+	 * to take the token over. A job submitted while the token is released is
+	 * seen by its own submitter, which checks the token after counting it in
+	 * #pending_.
+	 */
+	private void circulateToken(int station) {
+		for (int i = 0; i < queues_.length; i++) {
+			Job job = queues_[station].poll();
+			if (job != null) {
+				transmit(station, job);
+			}
+			;
+			station = (station + 1) % queues_.length;
+		}
+		;
+		token_.set(station);
+		if (pending_.get() > 0) {
+			for (int i = 0; i < queues_.length; i++) {
+				Job job = queues_[(station + i) % queues_.length].peek();
+				if (job != null) {
+					LockSupport.unpark(job.submitter_);
+					return;
+				}
+				;
+			}
+			;
+		}
+		;
+	}
+
+	private void transmit(int station, Job job) {
+		long start = System.nanoTime();
+		waitTimes_.addAndGet(station, start - job.submittedAt_);
+		jobCounts_.incrementAndGet(station);
+		network_.printJobs(new Packet[] {job.packet_}, report_);
+		long end = System.nanoTime();
+		busyTime_.addAndGet(end - start);
+		finishedAt_.set(end);
+		pending_.decrementAndGet();
+		job.transmitted_ = true;
+		LockSupport.unpark(job.submitter_);
+	}
+
+	/**
+	 * Answer the number of submitted jobs not yet transmitted.
+	 */
+	public int pendingJobs() {
+		return pending_.get();
+	}
+
+	/**
+	 * Answer the number of jobs #workstation transmitted.
+	 * <p>
+	 * <strong>Precondition:</strong> hasStation(workstation);
+	 * </p>
+	 */
+	public long jobCountOf(String workstation) {
+		return jobCounts_.get(stations_.get(workstation).intValue());
+	}
+
+	/**
+	 * Answer the nanoseconds the jobs of #workstation waited for the token on
+	 * average, or 0 when it transmitted none.
+	 * <p>
+	 * <strong>Precondition:</strong> hasStation(workstation);
+	 * </p>
+	 */
+	public double averageWaitOf(String workstation) {
+		int station = stations_.get(workstation).intValue();
+		long count = jobCounts_.get(station);
+		return (count == 0) ? 0.0 : (double) waitTimes_.get(station) / count;
+	}
+
+	/**
+	 * Answer the fraction of the time between the first submission and the
+	 * end of the last transmission during which the ring was transmitting.
+	 */
+	public double utilization() {
+		long elapsed = finishedAt_.get() - startedAt_.get();
+		return (elapsed <= 0) ? 0.0 : Math.min(1.0, (double) busyTime_.get() / elapsed);
+	}
+
+	/**
+	 * Write the number of jobs and the average wait for the token of every
+	 * workstation, and the utilization of the ring, on #buf.
+	 */
+	public void printStatisticsOn(StringBuffer buf) {
+		for (int i = 0; i < stationNames_.length; i++) {
+			buf.append("Workstation ");
+			buf.append(stationNames_[i]);
+			buf.append(": ");
+			buf.append(jobCounts_.get(i));
+			buf.append(" jobs, average wait ");
+			buf.append((long) averageWaitOf(stationNames_[i]));
+			buf.append(" ns\n");
+		}
+		;
+		buf.append("Utilization: ");
+		buf.append(Math.round(utilization() * 100));
+		buf.append("%\n");
+	}
+}
@@ -0,0 +1,75 @@
+/*   This file is part of lanSimulation.
+ *
+ *   lanSimulation is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *
+ *   lanSimulation is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with lanSimulation; if not, write to the Free Software
+ *   Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ *   Copyright original Java version: 2004 Bart Du Bois, Serge Demeyer
+ *   Copyright C++ version: 2006 Matthias Rieger, Bart Van Rompaey
+ */
+package lanSimulation.internals;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+A <em>ByteSequence</em> is a read-only CharSequence view on the bytes of a ByteBuffer, every
+byte being read as one ISO-8859-1 character. Used as the payload of a Packet whose document
+lives in a buffer, such as a slice of a memory-mapped spool file, so that the document is
+never decoded nor copied onto the heap.
+ */
+public class ByteSequence implements CharSequence {
+    /**
+    Holds the bytes between position and limit of the viewed buffer.
+    */
+    private ByteBuffer bytes_;
+
+/**
+Construct a <em>ByteSequence</em> on the bytes between the position and the limit of #bytes.
+Later changes to the position and limit of #bytes do not affect the view.
+ */
+    public ByteSequence(ByteBuffer bytes) {
+        bytes_ = bytes.slice().asReadOnlyBuffer();
+    }
+
+    public int length() {
+        return bytes_.limit();
+    }
+
+    public char charAt(int index) {
+        return (char) (bytes_.get(index) & 0xFF);
+    }
+
+    public CharSequence subSequence(int start, int end) {
+        ByteBuffer bytes = bytes_.duplicate();
+        bytes.position(start);
+        bytes.limit(end);
+        return new ByteSequence(bytes);
+    }
+
+/**
+Answer a read-only view on the bytes of #receiver.
+ */
+    public ByteBuffer getBytes_() {
+        return bytes_.duplicate();
+    }
+
+/**
+Answer the characters of #receiver as a String, which copies them.
+ */
+    public String toString() {
+        byte[] bytes = new byte[bytes_.limit()];
+        bytes_.duplicate().get(bytes);
+        return new String(bytes, StandardCharsets.ISO_8859_1);
+    }
+}
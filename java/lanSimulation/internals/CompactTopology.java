@@ -0,0 +1,233 @@
+/*   This file is part of lanSimulation.
+ *
+ *   lanSimulation is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *
+ *   lanSimulation is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with lanSimulation; if not, write to the Free Software
+ *   Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ *   Copyright original Java version: 2004 Bart Du Bois, Serge Demeyer
+ *   Copyright C++ version: 2006 Matthias Rieger, Bart Van Rompaey
+ */
+package lanSimulation.internals;
+
+/**
+A <em>CompactTopology</em> stores a token ring as a struct of arrays instead of as linked
+Node objects: the types in a byte[], the next node ids in an int[] and all names in one
+shared character table. Used to simulate rings of many millions of nodes in a fixed heap.
+ */
+public class CompactTopology extends Topology {
+    /**
+    Holds the type of every node.
+    */
+    private byte[] types_;
+    /**
+    Holds the id of the next node of every node.
+    */
+    private int[] next_;
+    /**
+    Holds the characters of all names, one after the other.
+    */
+    private char[] nameChars_;
+    /**
+    Holds where the name of every node starts in #nameChars_; the name of node #id ends
+    where the name of node #id + 1 starts.
+    */
+    private int[] nameStart_;
+    /**
+    Open addressing hash table mapping names on node ids. Holds id + 1, or 0 for an empty slot.
+    */
+    private int[] slots_;
+    /**
+    Holds the id of the "first" node.
+    */
+    private int firstId_;
+    /**
+    Holds the number of nodes of type WORKSTATION.
+    */
+    private int workstationCount_;
+    /**
+    Whether several nodes have the same name.
+    */
+    private boolean duplicateNames_;
+    /**
+    Holds the position of every node on the token ring. Computed on first use; volatile,
+    so that threads computing it at the same time publish a fully filled array.
+    */
+    private volatile int[] positions_;
+
+/**
+Construct a <em>CompactTopology</em> where node #id has type #types[id], name #names[id]
+and next node #next[id]. The arrays are copied, so later changes to them leave the
+topology as it was.
+<p><strong>Precondition:</strong> (types.length == names.length) & (types.length == next.length)
+& (firstId >= 0) & (firstId < types.length);</p>
+ */
+    public CompactTopology(byte[] types, String[] names, int[] next, int firstId) {
+        assert (types.length == names.length) & (types.length == next.length);
+        assert (firstId >= 0) & (firstId < types.length);
+        int length = 0;
+        for (int id = 0; id < names.length; id++) {
+            length += names[id].length();
+        };
+        char[] nameChars = new char[length];
+        int[] nameStart = new int[names.length + 1];
+        length = 0;
+        for (int id = 0; id < names.length; id++) {
+            nameStart[id] = length;
+            names[id].getChars(0, names[id].length(), nameChars, length);
+            length += names[id].length();
+        };
+        nameStart[names.length] = length;
+        init(types.clone(), next.clone(), nameChars, nameStart, firstId);
+    }
+
+/**
+Construct a <em>CompactTopology</em> directly on its arrays, which are not copied. Only
+for arrays no other object refers to.
+ */
+    CompactTopology(byte[] types, int[] next, char[] nameChars, int[] nameStart, int firstId) {
+        init(types, next, nameChars, nameStart, firstId);
+    }
+
+    private void init(byte[] types, int[] next, char[] nameChars, int[] nameStart, int firstId) {
+        types_ = types;
+        next_ = next;
+        nameChars_ = nameChars;
+        nameStart_ = nameStart;
+        firstId_ = firstId;
+        positions_ = null;
+
+        int capacity = 2;
+        while (capacity < types.length * 2) {
+            capacity <<= 1;
+        };
+        slots_ = new int[capacity];
+        workstationCount_ = 0;
+        duplicateNames_ = false;
+        for (int id = 0; id < types.length; id++) {
+            if (types[id] == Node.WORKSTATION) {
+                workstationCount_++;
+            };
+            int slot = hash(id) & (capacity - 1);
+            while (slots_[slot] != 0) {
+                if (sameName(slots_[slot] - 1, id)) {
+                    duplicateNames_ = true;
+                    break; // keep the first node with a duplicate name
+                };
+                slot = (slot + 1) & (capacity - 1);
+            };
+            if (slots_[slot] == 0) {
+                slots_[slot] = id + 1;
+            };
+        };
+    }
+
+/**
+Answer the hash of the name of node #id: String.hashCode() of that name, with its high
+bits mixed into the low ones.
+ */
+    private int hash(int id) {
+        int h = 0;
+        for (int i = nameStart_[id]; i < nameStart_[id + 1]; i++) {
+            h = 31 * h + nameChars_[i];
+        };
+        return h ^ (h >>> 16);
+    }
+
+    private boolean sameName(int id, int otherId) {
+        int length = nameStart_[id + 1] - nameStart_[id];
+        if (length != nameStart_[otherId + 1] - nameStart_[otherId]) {
+            return false;
+        };
+        for (int i = 0; i < length; i++) {
+            if (nameChars_[nameStart_[id] + i] != nameChars_[nameStart_[otherId] + i]) {
+                return false;
+            };
+        };
+        return true;
+    }
+
+    private boolean hasName(int id, String name) {
+        int start = nameStart_[id];
+        if (nameStart_[id + 1] - start != name.length()) {
+            return false;
+        };
+        for (int i = 0; i < name.length(); i++) {
+            if (nameChars_[start + i] != name.charAt(i)) {
+                return false;
+            };
+        };
+        return true;
+    }
+
+    public int size() {
+        return types_.length;
+    }
+
+    public int firstId() {
+        return firstId_;
+    }
+
+    public int idOf(String name) {
+        int h = name.hashCode(); // the hash(id) of a node with this name
+        int slot = (h ^ (h >>> 16)) & (slots_.length - 1);
+        while (slots_[slot] != 0) {
+            if (hasName(slots_[slot] - 1, name)) {
+                return slots_[slot] - 1;
+            };
+            slot = (slot + 1) & (slots_.length - 1);
+        };
+        return -1;
+    }
+
+    public byte typeOf(int id) {
+        return types_[id];
+    }
+
+    public String nameOf(int id) {
+        return new String(nameChars_, nameStart_[id], nameStart_[id + 1] - nameStart_[id]);
+    }
+
+    public int nextOf(int id) {
+        return next_[id];
+    }
+
+/**
+Answer the position of node #id on the token ring.
+<p><strong>Precondition:</strong> the token ring is circular;</p>
+ */
+    public int positionOf(int id) {
+        if (positions_ == null) {
+            int[] positions = new int[types_.length];
+            int currentId = firstId_, position = 0;
+            do {
+                positions[currentId] = position++;
+                currentId = next_[currentId];
+            } while (currentId != firstId_);
+            positions_ = positions;
+        };
+        return positions_[id];
+    }
+
+/**
+Answer the number of nodes of type WORKSTATION. In a compact topology all of them count
+as registered workstations, which is only consistent when every node is on the token ring:
+RingVerifier rejects a topology holding nodes the token ring does not visit.
+ */
+    public int workstationCount() {
+        return workstationCount_;
+    }
+
+    public boolean hasDuplicateNames() {
+        return duplicateNames_;
+    }
+}
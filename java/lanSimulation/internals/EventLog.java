@@ -0,0 +1,287 @@
+/*   This file is part of lanSimulation.
+ *
+ *   lanSimulation is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *
+ *   lanSimulation is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with lanSimulation; if not, write to the Free Software
+ *   Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ *   Copyright original Java version: 2004 Bart Du Bois, Serge Demeyer
+ *   Copyright C++ version: 2006 Matthias Rieger, Bart Van Rompaey
+ */
+package lanSimulation.internals;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+An <em>EventLog</em> records what happens on a token ring as compact binary events in a
+preallocated ring buffer, instead of as report text. Every event holds an event type, a node
+id, a packet id and a timestamp. When the buffer is full the oldest events are overwritten.
+The text of the report is only produced when the log is rendered.
+<p>Requests running concurrently may share a log: each event claims its slot, and each packet
+its id, atomically. The events are only read back, or rendered, while no requests record
+events.</p>
+ */
+public class EventLog {
+    //enumeration constants specifying all event types
+    /**
+    A workstation requests printing the message of a packet.
+    */
+    public static final byte PRINT_REQUEST = 0;
+    /**
+    A node passes a print packet on.
+    */
+    public static final byte HOP = 1;
+    /**
+    A printer delivered a print packet.
+    */
+    public static final byte DELIVERED = 2;
+    /**
+    A print packet was cancelled because its destination is not on the token ring.
+    */
+    public static final byte NOT_FOUND = 3;
+    /**
+    A print packet was cancelled because its destination is not a printer.
+    */
+    public static final byte NOT_A_PRINTER = 4;
+    /**
+    A broadcast packet is sent.
+    */
+    public static final byte BROADCAST_REQUEST = 5;
+    /**
+    A node accepts a broadcast packet and passes it on.
+    */
+    public static final byte BROADCAST_HOP = 6;
+    /**
+    A broadcast packet travelled the whole token ring.
+    */
+    public static final byte BROADCAST_DONE = 7;
+    /**
+    The nodes passing a print packet on, starting with the node of the event, are reported
+    as a summary.
+    */
+    public static final byte HOPS_SUMMARIZED = 8;
+    /**
+    The nodes accepting a broadcast packet, starting with the node of the event, are
+    reported as a summary.
+    */
+    public static final byte BROADCAST_HOPS_SUMMARIZED = 9;
+    /**
+    A print packet was transferred to the printer of the event as fragments.
+    */
+    public static final byte DOCUMENT_SENT = 10;
+
+    private static final int PACKET_ID_BITS = 24;
+    private static final int PACKET_ID_MASK = (1 << PACKET_ID_BITS) - 1;
+
+    /**
+    Holds type, packet id and node id of every event, packed in a long.
+    */
+    private long[] events_;
+    /**
+    Holds the System.nanoTime() of every event.
+    */
+    private long[] times_;
+    /**
+    Holds the number of events recorded since the last #clear().
+    */
+    private final AtomicLong recorded_ = new AtomicLong();
+    /**
+    Holds the packets referred to by the events, indexed by packet id.
+    */
+    private Packet[] packets_;
+    /**
+    Holds the topology every packet travelled, used to look up node names when rendering.
+    */
+    private Topology[] topologies_;
+    /**
+    Holds the pipeline every packet was transferred through, if any, indexed by packet id.
+    */
+    private Pipeline[] pipelines_;
+    /**
+    Holds the steps the transfer of every packet through its pipeline took, indexed by
+    packet id.
+    */
+    private long[] steps_;
+    /**
+    Holds the id of the next packet.
+    */
+    private final AtomicInteger nextPacketId_ = new AtomicInteger();
+
+/**
+Construct an <em>EventLog</em> retaining the last #capacity events.
+<p><strong>Precondition:</strong> capacity is a power of two;</p>
+ */
+    public EventLog(int capacity) {
+        assert (capacity > 0) & ((capacity & (capacity - 1)) == 0);
+        events_ = new long[capacity];
+        times_ = new long[capacity];
+        packets_ = new Packet[Math.min(capacity, 1 << PACKET_ID_BITS)];
+        topologies_ = new Topology[packets_.length];
+        pipelines_ = new Pipeline[packets_.length];
+        steps_ = new long[packets_.length];
+        clear();
+    }
+
+/**
+Forget all recorded events and packets.
+ */
+    public void clear() {
+        recorded_.set(0);
+        nextPacketId_.set(0);
+        for (int i = 0; i < packets_.length; i++) {
+            packets_[i] = null;
+            topologies_[i] = null;
+            pipelines_[i] = null;
+        };
+    }
+
+/**
+Register #packet, travelling on #topology, and answer its packet id.
+ */
+    public int startPacket(Packet packet, Topology topology) {
+        int packetId = nextPacketId_.getAndIncrement() & PACKET_ID_MASK;
+        packets_[packetId & (packets_.length - 1)] = packet;
+        topologies_[packetId & (packets_.length - 1)] = topology;
+        pipelines_[packetId & (packets_.length - 1)] = null;
+        return packetId;
+    }
+
+/**
+Record an event of #type at node #nodeId (-1 when it concerns no node) for packet #packetId.
+ */
+    public void record(byte type, int nodeId, int packetId) {
+        int slot = (int) recorded_.getAndIncrement() & (events_.length - 1);
+        events_[slot] = ((long) type << 56) | ((long) (packetId & PACKET_ID_MASK) << 32)
+                | (nodeId & 0xFFFFFFFFL);
+        times_[slot] = System.nanoTime();
+    }
+
+/**
+Record a DOCUMENT_SENT event at printer #nodeId for packet #packetId, transferred through
+#pipeline in #steps steps.
+ */
+    public void recordTransfer(Pipeline pipeline, long steps, int nodeId, int packetId) {
+        pipelines_[packetId & (packets_.length - 1)] = pipeline;
+        steps_[packetId & (packets_.length - 1)] = steps;
+        record(DOCUMENT_SENT, nodeId, packetId);
+    }
+
+/**
+Answer the number of events retained, the oldest being event 0.
+ */
+    public int size() {
+        return (int) Math.min(recorded_.get(), events_.length);
+    }
+
+    private int slot(int event) {
+        assert (event >= 0) & (event < size());
+        return (int) (recorded_.get() - size() + event) & (events_.length - 1);
+    }
+
+/**
+Answer the type of retained event #event.
+ */
+    public byte typeAt(int event) {
+        return (byte) (events_[slot(event)] >>> 56);
+    }
+
+/**
+Answer the node id of retained event #event.
+ */
+    public int nodeIdAt(int event) {
+        return (int) events_[slot(event)];
+    }
+
+/**
+Answer the packet id of retained event #event.
+ */
+    public int packetIdAt(int event) {
+        return (int) (events_[slot(event)] >>> 32) & PACKET_ID_MASK;
+    }
+
+/**
+Answer the System.nanoTime() of retained event #event.
+ */
+    public long timeAt(int event) {
+        return times_[slot(event)];
+    }
+
+/**
+Answer the steps the transfer of retained DOCUMENT_SENT event #event took.
+ */
+    public long transferStepsAt(int event) {
+        assert typeAt(event) == DOCUMENT_SENT;
+        return steps_[packetIdAt(event) & (packets_.length - 1)];
+    }
+
+/**
+Write the report text of all retained events on #report, exactly as a Network writes it
+when handling the requests with a report.
+ */
+    public void renderOn(Writer report) throws IOException {
+        for (int event = 0; event < size(); event++) {
+            int packetSlot = packetIdAt(event) & (packets_.length - 1);
+            Packet packet = packets_[packetSlot];
+            Topology topology = topologies_[packetSlot];
+            switch (typeAt(event)) {
+            case PRINT_REQUEST:
+                report.write("'");
+                report.write(packet.getOrigin_());
+                report.write("' requests printing of '");
+                packet.printMessage(report);
+                report.write("' on '");
+                report.write(packet.getDestination_());
+                report.write("' ...\n");
+                break;
+            case HOP:
+                Node.reportBroadcast(report, topology.nameOf(nodeIdAt(event)), false);
+                break;
+            case DELIVERED:
+                packet.printDocument(report);
+                break;
+            case NOT_FOUND:
+                report.write(">>> Destinition not found, print job cancelled.\n\n");
+                break;
+            case NOT_A_PRINTER:
+                report.write(">>> Destinition is not a printer, print job cancelled.\n\n");
+                break;
+            case BROADCAST_REQUEST:
+                report.write("Broadcast Request\n");
+                break;
+            case BROADCAST_HOP:
+                Node.reportBroadcast(report, topology.nameOf(nodeIdAt(event)), true);
+                break;
+            case BROADCAST_DONE:
+                report.write(">>> Broadcast travelled whole token ring.\n\n");
+                break;
+            case HOPS_SUMMARIZED:
+                Node.reportHops(report, topology, nodeIdAt(event), topology.hopsBetween(
+                        packet.getOriginId_(), packet.getDestinationId_()), false);
+                break;
+            case BROADCAST_HOPS_SUMMARIZED:
+                Node.reportHops(report, topology, nodeIdAt(event), topology.size(), true);
+                break;
+            case DOCUMENT_SENT:
+                int hops = topology.hopsBetween(packet.getOriginId_(), packet.getDestinationId_());
+                Pipeline pipeline = pipelines_[packetSlot];
+                pipeline.reportTransfer(report, pipeline.split(packet.getPayload_()).length,
+                        hops, steps_[packetSlot]);
+                break;
+            default:
+                break;
+            };
+        };
+    }
+}
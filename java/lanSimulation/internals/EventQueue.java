@@ -0,0 +1,186 @@
+/*   This file is part of lanSimulation.
+ *
+ *   lanSimulation is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *
+ *   lanSimulation is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with lanSimulation; if not, write to the Free Software
+ *   Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ *   Copyright original Java version: 2004 Bart Du Bois, Serge Demeyer
+ *   Copyright C++ version: 2006 Matthias Rieger, Bart Van Rompaey
+ */
+package lanSimulation.internals;
+
+/**
+An <em>EventQueue</em> holds the scheduled events of a discrete-event simulation in a binary
+heap over primitive arrays, ordered by simulated time and, for equal times, by the order in
+which they were scheduled. Every event holds a type, a node id and a packet id. Neither
+scheduling nor taking an event allocates, except when the heap grows.
+ */
+public class EventQueue {
+    private long[] times_;
+    /**
+    Holds for every event how many events were scheduled before it, to keep events scheduled
+    for the same time in order.
+    */
+    private long[] order_;
+    private byte[] types_;
+    private int[] nodeIds_;
+    private int[] packetIds_;
+    private int size_;
+    private long scheduled_;
+    /**
+    Hold the event taken last by #next().
+    */
+    private long time_;
+    private byte type_;
+    private int nodeId_;
+    private int packetId_;
+
+/**
+Construct an empty <em>EventQueue</em> with room for #capacity events. The heap grows when
+more events are scheduled.
+<p><strong>Precondition:</strong> capacity > 0;</p>
+ */
+    public EventQueue(int capacity) {
+        assert capacity > 0;
+        times_ = new long[capacity];
+        order_ = new long[capacity];
+        types_ = new byte[capacity];
+        nodeIds_ = new int[capacity];
+        packetIds_ = new int[capacity];
+        size_ = 0;
+        scheduled_ = 0;
+        time_ = 0;
+        type_ = -1;
+        nodeId_ = -1;
+        packetId_ = -1;
+    }
+
+    public boolean isEmpty() {
+        return size_ == 0;
+    }
+
+    public int size() {
+        return size_;
+    }
+
+/**
+Schedule an event of #type at node #nodeId for packet #packetId at simulated #time.
+ */
+    public void schedule(long time, byte type, int nodeId, int packetId) {
+        if (size_ == times_.length) {
+            grow();
+        };
+        long order = scheduled_++;
+        // sift the new event up from the end of the heap
+        int hole = size_++;
+        while (hole > 0) {
+            int parent = (hole - 1) >>> 1;
+            if ((times_[parent] < time) | ((times_[parent] == time) & (order_[parent] < order))) {
+                break;
+            };
+            move(parent, hole);
+            hole = parent;
+        };
+        times_[hole] = time;
+        order_[hole] = order;
+        types_[hole] = type;
+        nodeIds_[hole] = nodeId;
+        packetIds_[hole] = packetId;
+    }
+
+/**
+Answer the time of the earliest event.
+<p><strong>Precondition:</strong> ! isEmpty();</p>
+ */
+    public long peekTime() {
+        assert size_ > 0;
+        return times_[0];
+    }
+
+/**
+Remove the earliest event, which becomes the event answered by #getTime_(), #getType_(),
+#getNodeId_() and #getPacketId_().
+<p><strong>Precondition:</strong> ! isEmpty();</p>
+ */
+    public void next() {
+        assert size_ > 0;
+        time_ = times_[0];
+        type_ = types_[0];
+        nodeId_ = nodeIds_[0];
+        packetId_ = packetIds_[0];
+
+        // sift the last event down from the root of the heap
+        int last = --size_;
+        long time = times_[last], order = order_[last];
+        int hole = 0, child = 1;
+        while (child < last) {
+            if ((child + 1 < last) & before(child + 1, child)) {
+                child++;
+            };
+            if ((time < times_[child]) | ((time == times_[child]) & (order < order_[child]))) {
+                break;
+            };
+            move(child, hole);
+            hole = child;
+            child = 2 * hole + 1;
+        };
+        move(last, hole);
+    }
+
+    public long getTime_() {
+        return time_;
+    }
+
+    public byte getType_() {
+        return type_;
+    }
+
+    public int getNodeId_() {
+        return nodeId_;
+    }
+
+    public int getPacketId_() {
+        return packetId_;
+    }
+
+    private boolean before(int i, int j) {
+        return (times_[i] < times_[j]) | ((times_[i] == times_[j]) & (order_[i] < order_[j]));
+    }
+
+    private void move(int from, int to) {
+        times_[to] = times_[from];
+        order_[to] = order_[from];
+        types_[to] = types_[from];
+        nodeIds_[to] = nodeIds_[from];
+        packetIds_[to] = packetIds_[from];
+    }
+
+    private void grow() {
+        int capacity = times_.length * 2;
+        long[] times = new long[capacity];
+        long[] order = new long[capacity];
+        byte[] types = new byte[capacity];
+        int[] nodeIds = new int[capacity];
+        int[] packetIds = new int[capacity];
+        System.arraycopy(times_, 0, times, 0, size_);
+        System.arraycopy(order_, 0, order, 0, size_);
+        System.arraycopy(types_, 0, types, 0, size_);
+        System.arraycopy(nodeIds_, 0, nodeIds, 0, size_);
+        System.arraycopy(packetIds_, 0, packetIds, 0, size_);
+        times_ = times;
+        order_ = order;
+        types_ = types;
+        nodeIds_ = nodeIds;
+        packetIds_ = packetIds;
+    }
+}
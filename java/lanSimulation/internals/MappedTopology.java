@@ -0,0 +1,272 @@
+/*   This file is part of lanSimulation.
+ *
+ *   lanSimulation is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *
+ *   lanSimulation is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with lanSimulation; if not, write to the Free Software
+ *   Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ *   Copyright original Java version: 2004 Bart Du Bois, Serge Demeyer
+ *   Copyright C++ version: 2006 Matthias Rieger, Bart Van Rompaey
+ */
+package lanSimulation.internals;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+A <em>MappedTopology</em> reads a token ring from a topology file through a memory-mapped
+FileChannel. No name is decoded when the file is opened: node types and names are read from
+the mapping when they are asked for, so huge rings open quickly and live outside the heap.
+Opening only scans the name offsets and the hash table, so that a truncated or corrupted file
+fails there rather than on a later request.
+The nodes are stored in ring order, starting at the "first" node, so the id of a node is its
+position and the next node of node id is node id + 1.
+<p>A topology file holds, all integers big-endian:</p>
+<pre>
+    header    int MAGIC, int VERSION, int size, int workstationCount, int slotCount
+    types     byte[size], padded to a multiple of 4 bytes
+    nameStart int[size + 1], offsets of the UTF-8 encoded names in the names section
+    slots     int[slotCount], open addressing hash table holding node id + 1 or 0
+    names     byte[nameStart[size]]
+</pre>
+ */
+public class MappedTopology extends Topology {
+    /**
+    First int of every topology file.
+    */
+    public static final int MAGIC = 0x4C414E54; // "LANT"
+    /**
+    Version of the topology file format.
+    */
+    public static final int VERSION = 2;
+    private static final int HEADER_SIZE = 5 * 4;
+
+    private int size_;
+    private int workstationCount_;
+    private ByteBuffer types_;
+    private IntBuffer nameStart_;
+    private IntBuffer slots_;
+    private ByteBuffer names_;
+    /**
+    Holds the number of nodes the hash table of names leads to. The table only holds the
+    first of several nodes with the same name.
+    */
+    private int namedNodes_;
+
+/**
+Open the topology file #file. The header is checked against the length of #file before
+anything is mapped; then the name offsets must ascend within the names section and the hash
+table may only hold node ids, or the file is rejected.
+ */
+    public MappedTopology(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            long length = channel.size();
+            if (length < HEADER_SIZE) {
+                throw new IOException("Not a lanSimulation topology file: " + file);
+            };
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+            if (header.getInt() != MAGIC) {
+                throw new IOException("Not a lanSimulation topology file: " + file);
+            };
+            if (header.getInt() != VERSION) {
+                throw new IOException("Unsupported topology file version: " + file);
+            };
+            size_ = header.getInt();
+            workstationCount_ = header.getInt();
+            int slotCount = header.getInt();
+            // the hash table needs a free slot to end every probe
+            if ((size_ <= 0) | (workstationCount_ < 0) | (workstationCount_ > size_)
+                    | (slotCount <= size_) | ((slotCount & (slotCount - 1)) != 0)) {
+                throw new IOException("Malformed topology file: " + file);
+            };
+            long offset = HEADER_SIZE + padded(size_);
+            long namesOffset = offset + 4L * (size_ + 1) + 4L * slotCount;
+            if (namesOffset > length) {
+                throw new IOException("Malformed topology file: " + file);
+            };
+
+            types_ = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, size_);
+            nameStart_ = channel.map(FileChannel.MapMode.READ_ONLY, offset, 4L * (size_ + 1)).asIntBuffer();
+            offset += 4L * (size_ + 1);
+            if ((nameStart_.get(0) != 0) || (namesOffset + nameStart_.get(size_) != length)) {
+                throw new IOException("Malformed topology file: " + file);
+            };
+            slots_ = channel.map(FileChannel.MapMode.READ_ONLY, offset, 4L * slotCount).asIntBuffer();
+            names_ = channel.map(FileChannel.MapMode.READ_ONLY, namesOffset, nameStart_.get(size_));
+            for (int id = 0; id < size_; id++) {
+                if (nameStart_.get(id) > nameStart_.get(id + 1)) {
+                    throw new IOException("Malformed topology file: " + file);
+                };
+            };
+            namedNodes_ = 0;
+            for (int slot = 0; slot < slotCount; slot++) {
+                int entry = slots_.get(slot);
+                if ((entry < 0) || (entry > size_)) {
+                    throw new IOException("Malformed topology file: " + file);
+                };
+                if (entry != 0) {
+                    namedNodes_++;
+                };
+            };
+        } finally {
+            raf.close(); // the mappings remain valid
+        }
+    }
+
+/**
+Write #topology on #file in the format read by a <em>MappedTopology</em>, its nodes in ring
+order starting at its "first" node.
+<p><strong>Precondition:</strong> the token ring of #topology is circular;</p>
+ */
+    public static void write(Topology topology, File file) throws IOException {
+        int size = topology.size();
+        int[] ids = new int[size];
+        int currentId = topology.firstId();
+        for (int position = 0; position < size; position++) {
+            ids[position] = currentId;
+            currentId = topology.nextOf(currentId);
+        };
+        assert currentId == topology.firstId();
+
+        byte[][] names = new byte[size][];
+        int slotCount = 2;
+        while (slotCount < size * 2) {
+            slotCount <<= 1;
+        };
+        int[] slots = new int[slotCount];
+        for (int position = 0; position < size; position++) {
+            String name = topology.nameOf(ids[position]);
+            names[position] = name.getBytes(StandardCharsets.UTF_8);
+            if (topology.idOf(name) == ids[position]) { // only the first node with a duplicate name
+                int slot = hash(name) & (slotCount - 1);
+                while (slots[slot] != 0) {
+                    slot = (slot + 1) & (slotCount - 1);
+                };
+                slots[slot] = position + 1;
+            };
+        };
+
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(file), 1 << 16));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(size);
+            out.writeInt(topology.workstationCount());
+            out.writeInt(slotCount);
+            for (int position = 0; position < size; position++) {
+                out.writeByte(topology.typeOf(ids[position]));
+            };
+            for (int i = size; i < padded(size); i++) {
+                out.writeByte(0);
+            };
+            int start = 0;
+            for (int position = 0; position < size; position++) {
+                out.writeInt(start);
+                start += names[position].length;
+            };
+            out.writeInt(start);
+            for (int slot = 0; slot < slotCount; slot++) {
+                out.writeInt(slots[slot]);
+            };
+            for (int position = 0; position < size; position++) {
+                out.write(names[position]);
+            };
+        } finally {
+            out.close();
+        }
+    }
+
+    private static long padded(int length) {
+        return (length + 3L) & ~3L;
+    }
+
+    private static int hash(String name) {
+        int h = name.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    public int size() {
+        return size_;
+    }
+
+    public int firstId() {
+        return 0;
+    }
+
+    public int idOf(String name) {
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        int mask = slots_.limit() - 1;
+        int slot = hash(name) & mask;
+        while (slots_.get(slot) != 0) {
+            int id = slots_.get(slot) - 1;
+            if (hasName(id, bytes)) {
+                return id;
+            };
+            slot = (slot + 1) & mask;
+        };
+        return -1;
+    }
+
+    private boolean hasName(int id, byte[] bytes) {
+        int start = nameStart_.get(id);
+        if (nameStart_.get(id + 1) - start != bytes.length) {
+            return false;
+        };
+        for (int i = 0; i < bytes.length; i++) {
+            if (names_.get(start + i) != bytes[i]) {
+                return false;
+            };
+        };
+        return true;
+    }
+
+    public byte typeOf(int id) {
+        return types_.get(id);
+    }
+
+    public String nameOf(int id) {
+        int start = nameStart_.get(id);
+        byte[] bytes = new byte[nameStart_.get(id + 1) - start];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = names_.get(start + i);
+        };
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public int nextOf(int id) {
+        id++;
+        return (id == size_) ? 0 : id;
+    }
+
+    public int workstationCount() {
+        return workstationCount_;
+    }
+
+    public boolean hasDuplicateNames() {
+        return namedNodes_ < size_;
+    }
+
+    public int positionOf(int id) {
+        return id;
+    }
+}
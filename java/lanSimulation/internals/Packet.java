@@ -1,139 +1,274 @@
-/*   This file is part of lanSimulation.
- *
- *   lanSimulation is free software; you can redistribute it and/or modify
- *   it under the terms of the GNU General Public License as published by
- *   the Free Software Foundation; either version 2 of the License, or
- *   (at your option) any later version.
- *
- *   lanSimulation is distributed in the hope that it will be useful,
- *   but WITHOUT ANY WARRANTY; without even the implied warranty of
- *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
- *   GNU General Public License for more details.
- *
- *   You should have received a copy of the GNU General Public License
- *   along with lanSimulation; if not, write to the Free Software
- *   Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
- *
- *   Copyright original Java version: 2004 Bart Du Bois, Serge Demeyer
- *   Copyright C++ version: 2006 Matthias Rieger, Bart Van Rompaey
- */
-package lanSimulation.internals;
-
-import java.io.IOException;
-import java.io.Writer;
-
-/**
-A <em>Packet</em> represents a unit of information to be sent over the Local Area Network (LAN).
- */
-public class Packet {
-    /**
-    Holds the actual message to be send over the network.
-    */
-    private String message_;
-    /**
-    Holds the name of the Node which initiated the request.
-    */
-    private String origin_;
-    /**
-    Holds the name of the Node which should receive the information.
-    */
-    private String destination_;
-
-/**
-Construct a <em>Packet</em> with given #message and #destination.
- */
-    public Packet(String message, String destination) {
-	setMessage_(message);
-        setOrigin_("");
-	setDestination_(destination);
-    }
-    
-/**
-Construct a <em>Packet</em> with given #message, #origin and #receiver.
- */
-    public Packet(String message, String origin, String destination) {
-	setMessage_(message);
-	setOrigin_(origin);
-        setDestination_(destination);
-    }
-
-public String getMessage_() {
-	return message_;
-}
-
-public void setMessage_(String message_) {
-	this.message_ = message_;
-}
-
-public String getOrigin_() {
-	return origin_;
-}
-
-public void setOrigin_(String origin_) {
-	this.origin_ = origin_;
-}
-
-public String getDestination_() {
-	return destination_;
-}
-
-public void setDestination_(String destination_) {
-	this.destination_ = destination_;
-}
-
-public void printDocument(Writer report) throws IOException {
-	String author = "Unknown";
-	String title = "Untitled";
-	int startPos = 0, endPos = 0;
-	if (getMessage_().startsWith("!PS")) {
-		startPos = getMessage_().indexOf("author:");
-		if (startPos >= 0) {
-			endPos = getMessage_().indexOf(".",
-					startPos + 7);
-			if (endPos < 0) {
-				endPos = getMessage_().length();
-			}
-			;
-			author = getMessage_().substring(startPos + 7,
-					endPos);
-		}
-		;
-		startPos = getMessage_().indexOf("title:");
-		if (startPos >= 0) {
-			endPos = getMessage_().indexOf(".",
-					startPos + 6);
-			if (endPos < 0) {
-				endPos = getMessage_().length();
-			}
-			;
-			title = getMessage_().substring(startPos + 6,
-					endPos);
-		}
-		;
-		report.write("\tAccounting -- author = '");
-		report.write(author);
-		report.write("' -- title = '");
-		report.write(title);
-		report.write("'\n");
-		report.write(">>> Postscript job delivered.\n\n");
-		report.flush();
-	} else {
-		title = "ASCII DOCUMENT";
-		if (getMessage_().length() >= 16) {
-			author = getMessage_().substring(8, 16);
-		}
-		;
-		report.write("\tAccounting -- author = '");
-		report.write(author);
-		report.write("' -- title = '");
-		report.write(title);
-		report.write("'\n");
-		report.write(">>> ASCII Print job delivered.\n\n");
-		report.flush();
-	}
-	;
-}
-
-
-    
+/*   This file is part of lanSimulation.
+ *
+ *   lanSimulation is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *
+ *   lanSimulation is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with lanSimulation; if not, write to the Free Software
+ *   Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ *   Copyright original Java version: 2004 Bart Du Bois, Serge Demeyer
+ *   Copyright C++ version: 2006 Matthias Rieger, Bart Van Rompaey
+ */
+package lanSimulation.internals;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+
+/**
+A <em>Packet</em> represents a unit of information to be sent over the Local Area Network (LAN).
+ */
+public class Packet {
+    /**
+    Holds the actual message to be send over the network. Either a String or a view on a
+    document stored elsewhere, such as a ByteSequence.
+    */
+    private CharSequence message_;
+    /**
+    Holds the name of the Node which initiated the request.
+    */
+    private String origin_;
+    /**
+    Holds the name of the Node which should receive the information.
+    */
+    private String destination_;
+    /**
+    Holds the id of the Node which initiated the request, or -1 while unresolved.
+    @see lanSimulation.internals.RingIndex
+    */
+    private int originId_;
+    /**
+    Holds the id of the Node which should receive the information, or -1 when unresolved
+    or not on the token ring.
+    @see lanSimulation.internals.RingIndex
+    */
+    private int destinationId_;
+
+/**
+Construct a <em>Packet</em> with given #message and #destination.
+ */
+    public Packet(String message, String destination) {
+	setMessage_(message);
+        setOrigin_("");
+	setDestination_(destination);
+	setOriginId_(-1);
+	setDestinationId_(-1);
+    }
+    
+/**
+Construct a <em>Packet</em> with given #message, #origin and #receiver.
+ */
+    public Packet(String message, String origin, String destination) {
+	setMessage_(message);
+	setOrigin_(origin);
+        setDestination_(destination);
+	setOriginId_(-1);
+	setDestinationId_(-1);
+    }
+
+/**
+Construct a <em>Packet</em> with given #origin and #destination, carrying the document #payload
+without copying it.
+ */
+    public Packet(CharSequence payload, String origin, String destination) {
+	setPayload_(payload);
+	setOrigin_(origin);
+        setDestination_(destination);
+	setOriginId_(-1);
+	setDestinationId_(-1);
+    }
+
+/**
+Construct a <em>Packet</em> with given #origin and #destination, carrying the bytes between
+position and limit of #payload as document, every byte being an ISO-8859-1 character. The
+bytes are not copied, so #payload may be a slice of a memory-mapped spool file.
+ */
+    public Packet(ByteBuffer payload, String origin, String destination) {
+	this(new ByteSequence(payload), origin, destination);
+    }
+
+/**
+Answer the message as a String. Copies the document when it is a view; use #getPayload_()
+or #printMessage(Writer) to avoid that.
+ */
+public String getMessage_() {
+	return message_.toString();
+}
+
+public void setMessage_(String message_) {
+	this.message_ = message_;
+}
+
+/**
+Answer the message, without copying the document it views.
+ */
+public CharSequence getPayload_() {
+	return message_;
+}
+
+public void setPayload_(CharSequence message_) {
+	this.message_ = message_;
+}
+
+public String getOrigin_() {
+	return origin_;
+}
+
+public void setOrigin_(String origin_) {
+	this.origin_ = origin_;
+}
+
+public String getDestination_() {
+	return destination_;
+}
+
+public void setDestination_(String destination_) {
+	this.destination_ = destination_;
+}
+
+public int getOriginId_() {
+	return originId_;
+}
+
+public void setOriginId_(int originId_) {
+	this.originId_ = originId_;
+}
+
+public int getDestinationId_() {
+	return destinationId_;
+}
+
+public void setDestinationId_(int destinationId_) {
+	this.destinationId_ = destinationId_;
+}
+
+/**
+Write the accounting lines of #receiver, delivered on a printer, on #report. A PostScript
+document (starting with "!PS") is scanned once for the first "author:" and the first "title:",
+each value running up to the next "." or the end of the document. The author of an ASCII
+document is formed by its characters 8 up to 16. No substrings are created: the values are written on
+#report straight from the message.
+ */
+public void printDocument(Writer report) throws IOException {
+	CharSequence message = getPayload_();
+	int length = message.length();
+	if (startsWith(message, 0, "!PS")) {
+		// start and end of the first "author:" and "title:" values, -1 while not found
+		int authorStart = -1, authorEnd = -1, titleStart = -1, titleEnd = -1;
+		int i = 0;
+		while ((i < length) & ((authorEnd < 0) | (titleEnd < 0))) {
+			char c = message.charAt(i);
+			if (c == '.') {
+				if ((authorStart >= 0) & (authorEnd < 0) & (i >= authorStart)) {
+					authorEnd = i;
+				}
+				;
+				if ((titleStart >= 0) & (titleEnd < 0) & (i >= titleStart)) {
+					titleEnd = i;
+				}
+				;
+			} else if ((c == 'a') & (authorStart < 0)) {
+				if (startsWith(message, i, "author:")) {
+					authorStart = i + 7;
+				}
+				;
+			} else if ((c == 't') & (titleStart < 0)) {
+				if (startsWith(message, i, "title:")) {
+					titleStart = i + 6;
+				}
+				;
+			}
+			;
+			i++;
+		}
+		;
+		report.write("\tAccounting -- author = '");
+		if (authorStart >= 0) {
+			write(report, message, authorStart, authorEnd < 0 ? length : authorEnd);
+		} else {
+			report.write("Unknown");
+		}
+		;
+		report.write("' -- title = '");
+		if (titleStart >= 0) {
+			write(report, message, titleStart, titleEnd < 0 ? length : titleEnd);
+		} else {
+			report.write("Untitled");
+		}
+		;
+		report.write("'\n");
+		report.write(">>> Postscript job delivered.\n\n");
+	} else {
+		report.write("\tAccounting -- author = '");
+		if (length >= 16) {
+			write(report, message, 8, 16);
+		} else {
+			report.write("Unknown");
+		}
+		;
+		report.write("' -- title = '");
+		report.write("ASCII DOCUMENT");
+		report.write("'\n");
+		report.write(">>> ASCII Print job delivered.\n\n");
+	}
+	;
+}
+
+/**
+Write the message of #receiver on #report, without copying the document it views.
+ */
+public void printMessage(Writer report) throws IOException {
+	write(report, getPayload_(), 0, getPayload_().length());
+}
+
+/**
+Answer whether #text holds #key at position #start, comparing case-sensitively.
+ */
+private static boolean startsWith(CharSequence text, int start, String key) {
+	if (start + key.length() > text.length()) {
+		return false;
+	}
+	;
+	for (int i = 0; i < key.length(); i++) {
+		if (text.charAt(start + i) != key.charAt(i)) {
+			return false;
+		}
+		;
+	}
+	;
+	return true;
+}
+
+/**
+Write the characters #start up to #end of #text on #report.
+ */
+private static void write(Writer report, CharSequence text, int start, int end)
+		throws IOException {
+	if (text instanceof String) {
+		report.write((String) text, start, end - start);
+	} else {
+		char[] buffer = new char[Math.max(1, Math.min(end - start, 256))];
+		while (start < end) {
+			int count = Math.min(end - start, buffer.length);
+			for (int i = 0; i < count; i++) {
+				buffer[i] = text.charAt(start + i);
+			}
+			;
+			report.write(buffer, 0, count);
+			start += count;
+		}
+		;
+	}
+	;
+}
+
+    
 }
\ No newline at end of file
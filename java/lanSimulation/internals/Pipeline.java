@@ -0,0 +1,217 @@
+/*   This file is part of lanSimulation.
+ *
+ *   lanSimulation is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *
+ *   lanSimulation is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with lanSimulation; if not, write to the Free Software
+ *   Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ *   Copyright original Java version: 2004 Bart Du Bois, Serge Demeyer
+ *   Copyright C++ version: 2006 Matthias Rieger, Bart Van Rompaey
+ */
+package lanSimulation.internals;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.CharBuffer;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+A <em>Pipeline</em> models transferring a document as fragments of at most #fragmentSize_
+characters. Every step, each fragment in flight moves one hop further, and a new fragment
+leaves the workstation when fewer than #depth_ fragments are in flight. With a depth of one,
+a document of F fragments travels H hops in F * H steps; with a depth of at least H it
+takes F + H - 1 steps. Fragments are views on the document, never copies.
+<p>A pipeline counts the documents, fragments and steps of all its transfers, so the
+throughput of a simulation can be read back while requests run concurrently.</p>
+ */
+public class Pipeline {
+    /**
+    Holds the maximum number of characters of a fragment.
+    */
+    private int fragmentSize_;
+    /**
+    Holds the maximum number of fragments in flight at the same time.
+    */
+    private int depth_;
+    /**
+    Hold the number of documents, fragments and characters transferred, and the steps they
+    took.
+    */
+    private final AtomicLong documents_ = new AtomicLong();
+    private final AtomicLong fragments_ = new AtomicLong();
+    private final AtomicLong characters_ = new AtomicLong();
+    private final AtomicLong steps_ = new AtomicLong();
+
+/**
+Construct a <em>Pipeline</em> with given #fragmentSize and #depth.
+<p><strong>Precondition:</strong> (fragmentSize > 0) & (depth > 0);</p>
+ */
+    public Pipeline(int fragmentSize, int depth) {
+        assert (fragmentSize > 0) & (depth > 0);
+        fragmentSize_ = fragmentSize;
+        depth_ = depth;
+    }
+
+    public int getFragmentSize_() {
+        return fragmentSize_;
+    }
+
+    public int getDepth_() {
+        return depth_;
+    }
+
+    public long getDocuments_() {
+        return documents_.get();
+    }
+
+    public long getFragments_() {
+        return fragments_.get();
+    }
+
+    public long getCharacters_() {
+        return characters_.get();
+    }
+
+    public long getSteps_() {
+        return steps_.get();
+    }
+
+/**
+Answer the number of characters transferred per step, over all transfers so far.
+ */
+    public double throughput() {
+        long steps = steps_.get();
+        return (steps == 0) ? 0.0 : (double) characters_.get() / steps;
+    }
+
+/**
+Transfer the #fragments of a document over #hops hops, and count the transfer. Answer the
+number of steps it took.
+<p><strong>Precondition:</strong> (fragments.length > 0) & (hops > 0);</p>
+ */
+    public long transfer(CharSequence[] fragments, int hops) {
+        long steps = transferSteps(fragments.length, hops);
+        int characters = 0;
+        for (int i = 0; i < fragments.length; i++) {
+            characters += fragments[i].length();
+        };
+        documents_.incrementAndGet();
+        fragments_.addAndGet(fragments.length);
+        characters_.addAndGet(characters);
+        steps_.addAndGet(steps);
+        return steps;
+    }
+
+/**
+Split #document into fragments of #fragmentSize_ characters, the last one possibly shorter.
+An empty document yields one empty fragment.
+ */
+    public CharSequence[] split(CharSequence document) {
+        int length = document.length();
+        CharSequence[] fragments = new CharSequence[Math.max(1, (length + fragmentSize_ - 1) / fragmentSize_)];
+        for (int i = 0; i < fragments.length; i++) {
+            int start = i * fragmentSize_;
+            fragments[i] = CharBuffer.wrap(document, start, Math.min(start + fragmentSize_, length));
+        };
+        return fragments;
+    }
+
+/**
+Answer the number of steps until the last of #fragmentCount fragments, leaving one after the
+other, has travelled #hops hops.
+<p><strong>Precondition:</strong> (fragmentCount > 0) & (hops > 0);</p>
+ */
+    public long transferSteps(int fragmentCount, int hops) {
+        assert (fragmentCount > 0) & (hops > 0);
+        // the step at which each of the last #depth_ fragments left, in a ring buffer
+        long[] departures = new long[Math.min(depth_, fragmentCount)];
+        long departure = 0;
+        for (int i = 0; i < fragmentCount; i++) {
+            departure = i;
+            if (i >= depth_) {
+                // wait until the fragment #depth_ places ahead arrived
+                departure = Math.max(departure, departures[i % departures.length] + hops);
+            };
+            departures[i % departures.length] = departure;
+        };
+        return departure + hops;
+    }
+
+/**
+Report on #report that a document was sent in #fragmentCount fragments over #hops hops in
+#steps steps.
+ */
+    public void reportTransfer(Writer report, int fragmentCount, int hops, long steps) {
+        try {
+            report.write("\tDocument sent in ");
+            report.write(Integer.toString(fragmentCount));
+            report.write(" fragments of ");
+            report.write(Integer.toString(fragmentSize_));
+            report.write(" characters over ");
+            report.write(Integer.toString(hops));
+            report.write(" hops in ");
+            report.write(Long.toString(steps));
+            report.write(" steps.\n");
+        } catch (IOException exc) {
+            // just ignore
+        };
+    }
+
+/**
+Answer the document formed by the received #fragments, in sequence. The document is a view
+on the fragments.
+<p><strong>Precondition:</strong> all fragments but the last hold #fragmentSize_ characters;</p>
+ */
+    public CharSequence reassemble(CharSequence[] fragments) {
+        return new Reassembly(fragments, fragmentSize_);
+    }
+
+/**
+A <em>Reassembly</em> reads a sequence of fragments as one document.
+ */
+    private static class Reassembly implements CharSequence {
+        private CharSequence[] fragments_;
+        private int fragmentSize_;
+        private int length_;
+
+        Reassembly(CharSequence[] fragments, int fragmentSize) {
+            int length = 0;
+            for (int i = 0; i < fragments.length; i++) {
+                assert (i == fragments.length - 1) || (fragments[i].length() == fragmentSize);
+                length += fragments[i].length();
+            };
+            fragments_ = fragments;
+            fragmentSize_ = fragmentSize;
+            length_ = length;
+        }
+
+        public int length() {
+            return length_;
+        }
+
+        public char charAt(int index) {
+            return fragments_[index / fragmentSize_].charAt(index % fragmentSize_);
+        }
+
+        public CharSequence subSequence(int start, int end) {
+            return CharBuffer.wrap(this, start, end);
+        }
+
+        public String toString() {
+            StringBuilder buf = new StringBuilder(length_);
+            for (int i = 0; i < fragments_.length; i++) {
+                buf.append(fragments_[i]);
+            };
+            return buf.toString();
+        }
+    }
+}
@@ -0,0 +1,227 @@
+/*   This file is part of lanSimulation.
+ *
+ *   lanSimulation is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *
+ *   lanSimulation is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with lanSimulation; if not, write to the Free Software
+ *   Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ *   Copyright original Java version: 2004 Bart Du Bois, Serge Demeyer
+ *   Copyright C++ version: 2006 Matthias Rieger, Bart Van Rompaey
+ */
+package lanSimulation.internals;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+A <em>ReportSink</em> is a Writer that collects a report in memory and passes it on to its
+target Writer in large pieces. A Network flushes its report once per request, so the target
+receives one write per request, or one per #threshold characters for very large requests.
+An asynchronous sink hands the pieces to a background thread through a bounded queue, so
+the simulation does not wait for the target unless the queue is full.
+ */
+public class ReportSink extends Writer {
+    /**
+    Marks the end of the pieces in the queue of an asynchronous sink.
+    */
+    private static final String END = new String("");
+
+    /**
+    Holds the Writer receiving the report.
+    */
+    private Writer target_;
+    /**
+    Holds the part of the report not yet passed on to #target_.
+    */
+    private StringBuilder buffer_;
+    /**
+    Holds the number of characters after which #buffer_ is passed on without waiting for a
+    request boundary.
+    */
+    private int threshold_;
+    /**
+    Holds the pieces waiting for the background thread, or null for a synchronous sink.
+    */
+    private BlockingQueue<String> queue_;
+    private Thread writer_;
+    /**
+    Holds the first exception the background thread ran into, reported by #flush() or #close().
+    */
+    private volatile IOException failure_;
+    /**
+    Whether #close() was called. A closed sink rejects writes, and closing it again does nothing.
+    */
+    private boolean closed_;
+
+/**
+Construct a synchronous <em>ReportSink</em> on #target that passes the report on at request
+boundaries and whenever #threshold characters are collected.
+<p><strong>Precondition:</strong> threshold > 0;</p>
+ */
+    public ReportSink(Writer target, int threshold) {
+        assert threshold > 0;
+        target_ = target;
+        buffer_ = new StringBuilder(Math.min(threshold, 1 << 16));
+        threshold_ = threshold;
+        queue_ = null;
+        writer_ = null;
+        failure_ = null;
+        closed_ = false;
+    }
+
+/**
+Construct an asynchronous <em>ReportSink</em> on #target. Pieces of the report are queued,
+at most #capacity at a time, for a background thread writing them on #target.
+<p><strong>Precondition:</strong> (threshold > 0) & (capacity > 0);</p>
+ */
+    public ReportSink(Writer target, int threshold, int capacity) {
+        this(target, threshold);
+        assert capacity > 0;
+        queue_ = new ArrayBlockingQueue<String>(capacity);
+        writer_ = new Thread("ReportSink") {
+            public void run() {
+                drainQueue();
+            }
+        };
+        writer_.setDaemon(true);
+        writer_.start();
+    }
+
+    private void drainQueue() {
+        try {
+            while (true) {
+                String piece = queue_.take();
+                if (piece == END) {
+                    return;
+                };
+                if (failure_ == null) {
+                    try {
+                        target_.write(piece);
+                        if (queue_.isEmpty()) {
+                            target_.flush();
+                        };
+                    } catch (IOException exc) {
+                        failure_ = exc;
+                    };
+                };
+            }
+        } catch (InterruptedException exc) {
+            // stop writing
+        }
+    }
+
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        synchronized (lock) {
+            ensureOpen();
+            buffer_.append(cbuf, off, len);
+            if (buffer_.length() >= threshold_) {
+                passOn(false);
+            };
+        }
+    }
+
+    public void write(String str, int off, int len) throws IOException {
+        synchronized (lock) {
+            ensureOpen();
+            buffer_.append(str, off, off + len);
+            if (buffer_.length() >= threshold_) {
+                passOn(false);
+            };
+        }
+    }
+
+    public void write(int c) throws IOException {
+        synchronized (lock) {
+            ensureOpen();
+            buffer_.append((char) c);
+            if (buffer_.length() >= threshold_) {
+                passOn(false);
+            };
+        }
+    }
+
+/**
+Mark a request boundary: pass the collected report on to the target and flush it.
+ */
+    public void flush() throws IOException {
+        synchronized (lock) {
+            ensureOpen();
+            passOn(true);
+        }
+    }
+
+/**
+Pass the rest of the report on, wait until the background thread wrote it, and close the target.
+Does nothing when #receiver is closed already.
+ */
+    public void close() throws IOException {
+        synchronized (lock) {
+            if (closed_) {
+                return;
+            };
+            closed_ = true;
+            passOn(true);
+            if (queue_ != null) {
+                enqueue(END);
+                try {
+                    writer_.join();
+                } catch (InterruptedException exc) {
+                    Thread.currentThread().interrupt();
+                };
+                queue_ = null;
+            };
+            target_.close();
+            checkFailure();
+        }
+    }
+
+    private void passOn(boolean flush) throws IOException {
+        checkFailure();
+        if (queue_ != null) {
+            if (buffer_.length() > 0) {
+                enqueue(buffer_.toString());
+                buffer_.setLength(0);
+            };
+        } else {
+            if (buffer_.length() > 0) {
+                target_.write(buffer_.toString());
+                buffer_.setLength(0);
+            };
+            if (flush) {
+                target_.flush();
+            };
+        };
+    }
+
+    private void enqueue(String piece) throws IOException {
+        try {
+            queue_.put(piece);
+        } catch (InterruptedException exc) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while queueing a report");
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed_) {
+            throw new IOException("Stream closed");
+        };
+    }
+
+    private void checkFailure() throws IOException {
+        if (failure_ != null) {
+            throw failure_;
+        };
+    }
+}
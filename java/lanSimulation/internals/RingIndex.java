@@ -0,0 +1,754 @@
+/*   This file is part of lanSimulation.
+ *
+ *   lanSimulation is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *
+ *   lanSimulation is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with lanSimulation; if not, write to the Free Software
+ *   Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ *   Copyright original Java version: 2004 Bart Du Bois, Serge Demeyer
+ *   Copyright C++ version: 2006 Matthias Rieger, Bart Van Rompaey
+ */
+package lanSimulation.internals;
+
+import java.util.concurrent.RecursiveAction;
+
+/**
+A <em>RingIndex</em> records the position of every Node on a token ring, counted from
+some "first" node. Used to answer routing questions (is a node reachable, how many hops
+does a packet travel) without walking the ring.
+The positions form a dense id space: they are the node ids carried by a Packet.
+An index is immutable once built, a snapshot of the token ring that threads may share
+without locking while the Node objects are being relinked. Large rings are indexed in
+parallel segments on the common ForkJoinPool, once their nodes are collected.
+<p>The nodes are held in blocks of about BLOCK_SIZE nodes, and the names are mapped on the
+key of the block holding them, in partitions of about a quarter as many names. Blocks and
+partitions are open addressing hash tables of primitive slots, so indexing a ring boxes
+nothing per node. #inserted(),
+#removed() and #replaced() answer a new index sharing all blocks and partitions but the
+ones the edit changes, so an edit costs O(BLOCK_SIZE + size() / BLOCK_SIZE) instead of
+indexing the whole ring again.</p>
+ */
+public class RingIndex extends Topology {
+    /**
+    Rings larger than this are indexed in parallel segments of at most this many nodes.
+    */
+    public static final int SEGMENT_SIZE = 1 << 13;
+    /**
+    Number of nodes of a block when a ring is indexed as a whole. An edited block is split
+    when it grows beyond twice this size, and merged with a neighbour when it shrinks below
+    half of it.
+    */
+    public static final int BLOCK_SIZE = 1 << 9;
+
+    /**
+    Holds the blocks of nodes in the order a packet visits them.
+    */
+    private final Block[] blocks_;
+    /**
+    Holds the position of the first node of every block in #blocks_.
+    */
+    private final int[] starts_;
+    /**
+    Maps the key of every block on its index in #blocks_, or on -1 when no block has that key.
+    */
+    private final int[] blockIndices_;
+    /**
+    Map the names of all nodes on the key of the block holding them, partitioned on their hash
+    code. A name shared by several nodes maps on the block holding the first of them.
+    */
+    private final Partition[] partitions_;
+    private final int size_;
+    /**
+    Hold the number of nodes of type WORKSTATION and of type PRINTER on the token ring.
+    */
+    private final int workstationCount_;
+    private final int printerCount_;
+    /**
+    Whether several nodes on the token ring have the same name.
+    */
+    private final boolean duplicateNames_;
+    /**
+    Holds the topology version of the network the index was built for.
+    */
+    private final int version_;
+
+/**
+Construct the <em>RingIndex</em> of the token ring starting at #firstNode.
+<p><strong>Precondition:</strong> the token ring starting at #firstNode is circular;</p>
+ */
+    public RingIndex(Node firstNode) {
+        this(firstNode, 0);
+    }
+
+/**
+Construct the <em>RingIndex</em> of the token ring starting at #firstNode, for topology
+version #version.
+<p><strong>Precondition:</strong> the token ring starting at #firstNode is circular;</p>
+ */
+    public RingIndex(Node firstNode, int version) {
+        this(collect(firstNode), null, null, version);
+    }
+
+/**
+Construct a copy of #index, sharing its blocks and partitions, for topology version #version.
+Used when the token ring did not change since #index was built.
+ */
+    public RingIndex(RingIndex index, int version) {
+        blocks_ = index.blocks_;
+        starts_ = index.starts_;
+        blockIndices_ = index.blockIndices_;
+        partitions_ = index.partitions_;
+        size_ = index.size_;
+        workstationCount_ = index.workstationCount_;
+        printerCount_ = index.printerCount_;
+        duplicateNames_ = index.duplicateNames_;
+        version_ = version;
+    }
+
+/**
+Index #nodes, in ring order, with the given #types and #names, or with their current types
+and names when these are null.
+ */
+    private RingIndex(Node[] nodes, byte[] types, String[] names, int version) {
+        int size = nodes.length;
+        blocks_ = new Block[(size + BLOCK_SIZE - 1) / BLOCK_SIZE];
+        starts_ = new int[blocks_.length];
+        blockIndices_ = new int[blocks_.length];
+        partitions_ = new Partition[partitionCount(size)];
+        int[] partitionOf = new int[size];
+        Segment all = new Segment(this, nodes, types, names, partitionOf, 0, blocks_.length);
+        all.invoke(); // inline for small rings, forking segments on the common pool for large ones
+
+        // sort the positions on their partition, keeping ring order within a partition
+        int[] partitionStarts = new int[partitions_.length + 1];
+        for (int i = 0; i < size; i++) {
+            partitionStarts[partitionOf[i] + 1]++;
+        };
+        for (int i = 0; i < partitions_.length; i++) {
+            partitionStarts[i + 1] += partitionStarts[i];
+        };
+        int[] positions = new int[size];
+        int[] next = partitionStarts.clone();
+        for (int i = 0; i < size; i++) {
+            positions[next[partitionOf[i]]++] = i;
+        };
+        Partitioning partitioning = new Partitioning(this, partitionStarts, positions, 0,
+                partitions_.length);
+        partitioning.invoke();
+        size_ = size;
+        workstationCount_ = all.workstationCount_;
+        printerCount_ = all.printerCount_;
+        duplicateNames_ = partitioning.duplicateNames_;
+        version_ = version;
+    }
+
+    private RingIndex(Block[] blocks, int[] starts, int[] blockIndices, Partition[] partitions,
+            int size, int workstationCount, int printerCount, boolean duplicateNames, int version) {
+        blocks_ = blocks;
+        starts_ = starts;
+        blockIndices_ = blockIndices;
+        partitions_ = partitions;
+        size_ = size;
+        workstationCount_ = workstationCount;
+        printerCount_ = printerCount;
+        duplicateNames_ = duplicateNames;
+        version_ = version;
+    }
+
+    private static Node[] collect(Node firstNode) {
+        assert firstNode != null;
+        int size = 0;
+        Node currentNode = firstNode;
+        do {
+            size++;
+            currentNode = currentNode.getNextNode_();
+            assert currentNode != null;
+        } while (currentNode != firstNode);
+
+        Node[] nodes = new Node[size];
+        for (int i = 0; i < size; i++) {
+            nodes[i] = currentNode;
+            currentNode = currentNode.getNextNode_();
+        };
+        return nodes;
+    }
+
+/**
+Answer the number of name partitions of an index of #size nodes: a power of two, giving
+partitions of about BLOCK_SIZE / 4 names, so that an edit copies a small one.
+ */
+    private static int partitionCount(int size) {
+        return Integer.highestOneBit(Math.max(1, size / (BLOCK_SIZE / 4)));
+    }
+
+/**
+Answer the partition of #name among #count partitions. Taken from the high bits of a
+multiplicative hash, as the partitions hash their names on the low bits.
+ */
+    private static int partitionOf(String name, int count) {
+        if (count == 1) {
+            return 0;
+        };
+        return (name.hashCode() * 0x9E3779B9) >>> (Integer.numberOfLeadingZeros(count) + 1);
+    }
+
+/**
+Answer the topology version #receiver was built for.
+ */
+    public int getVersion_() {
+        return version_;
+    }
+
+    public int size() {
+        return size_;
+    }
+
+    public int firstId() {
+        return 0;
+    }
+
+/**
+Answer the index in #blocks_ of the block holding #position.
+ */
+    private int blockAt(int position) {
+        assert (position >= 0) & (position < size_);
+        int low = 0, high = blocks_.length - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (starts_[middle] <= position) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            };
+        };
+        return low;
+    }
+
+/**
+Answer the node at #position on the token ring.
+<p><strong>Precondition:</strong> (position >= 0) & (position < size());</p>
+ */
+    public Node nodeAt(int position) {
+        int block = blockAt(position);
+        return blocks_[block].nodes_[position - starts_[block]];
+    }
+
+    public int idOf(String name) {
+        int key = partitions_[partitionOf(name, partitions_.length)].get(name);
+        if (key < 0) {
+            return -1;
+        };
+        int block = blockIndices_[key];
+        return starts_[block] + blocks_[block].offsetOf(name);
+    }
+
+/**
+Answer the type node #id had when #receiver was built.
+ */
+    public byte typeOf(int id) {
+        int block = blockAt(id);
+        return blocks_[block].types_[id - starts_[block]];
+    }
+
+/**
+Answer the name node #id had when #receiver was built.
+ */
+    public String nameOf(int id) {
+        int block = blockAt(id);
+        return blocks_[block].names_[id - starts_[block]];
+    }
+
+    public int nextOf(int id) {
+        id++;
+        return (id == size_) ? 0 : id;
+    }
+
+    public int workstationCount() {
+        return workstationCount_;
+    }
+
+/**
+Answer the number of nodes of type PRINTER.
+ */
+    public int printerCount() {
+        return printerCount_;
+    }
+
+    public int positionOf(int id) {
+        return id;
+    }
+
+    public boolean hasDuplicateNames() {
+        return duplicateNames_;
+    }
+
+/**
+Answer the index of the token ring after #node was inserted right after position #position,
+for topology version #version.
+<p><strong>Precondition:</strong> (position >= 0) & (position < size()) & (idOf(node.getName_()) < 0);</p>
+ */
+    public RingIndex inserted(int position, Node node, int version) {
+        int block = blockAt(position);
+        Block old = blocks_[block];
+        int offset = position - starts_[block] + 1, length = old.nodes_.length;
+        Node[] nodes = new Node[length + 1];
+        byte[] types = new byte[length + 1];
+        String[] names = new String[length + 1];
+        System.arraycopy(old.nodes_, 0, nodes, 0, offset);
+        System.arraycopy(old.types_, 0, types, 0, offset);
+        System.arraycopy(old.names_, 0, names, 0, offset);
+        nodes[offset] = node;
+        types[offset] = node.getType_();
+        names[offset] = node.getName_();
+        System.arraycopy(old.nodes_, offset, nodes, offset + 1, length - offset);
+        System.arraycopy(old.types_, offset, types, offset + 1, length - offset);
+        System.arraycopy(old.names_, offset, names, offset + 1, length - offset);
+        return splice(block, 1, nodes, types, names, null, 1,
+                count(node.getType_(), Node.WORKSTATION), count(node.getType_(), Node.PRINTER), version);
+    }
+
+/**
+Answer the index of the token ring after the node at #position was removed, for topology
+version #version. The node following it becomes the "first" node when #position is 0.
+<p><strong>Precondition:</strong> (position >= 0) & (position < size()) & (size() > 1);</p>
+ */
+    public RingIndex removed(int position, int version) {
+        int block = blockAt(position);
+        Block old = blocks_[block];
+        int offset = position - starts_[block], length = old.nodes_.length;
+        int first = block, count = 1;
+        if ((length <= BLOCK_SIZE / 2) && (blocks_.length > 1)) {
+            // merge the block with a neighbour
+            count = 2;
+            if (block == blocks_.length - 1) {
+                first = block - 1;
+                offset += blocks_[first].nodes_.length;
+            };
+        };
+        int regionLength = -1;
+        for (int i = first; i < first + count; i++) {
+            regionLength += blocks_[i].nodes_.length;
+        };
+        Node[] nodes = new Node[regionLength];
+        byte[] types = new byte[regionLength];
+        String[] names = new String[regionLength];
+        int to = 0, from = 0;
+        for (int i = first; i < first + count; i++) {
+            Block current = blocks_[i];
+            for (int j = 0; j < current.nodes_.length; j++) {
+                if (from++ != offset) {
+                    nodes[to] = current.nodes_[j];
+                    types[to] = current.types_[j];
+                    names[to] = current.names_[j];
+                    to++;
+                };
+            };
+        };
+        byte type = old.types_[position - starts_[block]];
+        return splice(first, count, nodes, types, names, old.names_[position - starts_[block]],
+                -1, -count(type, Node.WORKSTATION), -count(type, Node.PRINTER), version);
+    }
+
+/**
+Answer the index of the token ring after the node at #position was replaced by #node, for
+topology version #version.
+<p><strong>Precondition:</strong> (position >= 0) & (position < size()) & the name of #node is
+not on the token ring, unless it is the name of the node at #position;</p>
+ */
+    public RingIndex replaced(int position, Node node, int version) {
+        int block = blockAt(position);
+        Block old = blocks_[block];
+        int offset = position - starts_[block];
+        Node[] nodes = old.nodes_.clone();
+        byte[] types = old.types_.clone();
+        String[] names = old.names_.clone();
+        nodes[offset] = node;
+        types[offset] = node.getType_();
+        names[offset] = node.getName_();
+        byte type = old.types_[offset];
+        return splice(block, 1, nodes, types, names, old.names_[offset], 0,
+                count(node.getType_(), Node.WORKSTATION) - count(type, Node.WORKSTATION),
+                count(node.getType_(), Node.PRINTER) - count(type, Node.PRINTER), version);
+    }
+
+    private static int count(byte type, byte countedType) {
+        return (type == countedType) ? 1 : 0;
+    }
+
+/**
+Answer the index with the #count blocks starting at #first replaced by blocks holding
+#nodes, #types and #names, and name #removedName (if not null) no longer mapped on the
+replaced blocks. Only the directory of blocks, the new blocks and the partitions of the
+names that moved are copied; the rest is shared with #receiver. When the directory or the
+partitions grew out of proportion to the ring, the whole ring is indexed again instead.
+ */
+    private RingIndex splice(int first, int count, Node[] nodes, byte[] types, String[] names,
+            String removedName, int sizeDelta, int workstationDelta, int printerDelta, int version) {
+        int size = size_ + sizeDelta;
+        // cut the region in blocks of at most twice BLOCK_SIZE nodes
+        int pieces = (nodes.length + 2 * BLOCK_SIZE - 1) / (2 * BLOCK_SIZE);
+        Block[] blocks = new Block[blocks_.length - count + pieces];
+        System.arraycopy(blocks_, 0, blocks, 0, first);
+        System.arraycopy(blocks_, first + count, blocks, first + pieces, blocks_.length - first - count);
+        int keyCount = blockIndices_.length + Math.max(0, pieces - count);
+        for (int i = 0; i < pieces; i++) {
+            int from = (int) ((long) nodes.length * i / pieces);
+            int to = (int) ((long) nodes.length * (i + 1) / pieces);
+            // reuse the keys of the replaced blocks, so that fewer names move
+            int key = (i < count) ? blocks_[first + i].key_ : blockIndices_.length + i - count;
+            Node[] blockNodes = new Node[to - from];
+            byte[] blockTypes = new byte[to - from];
+            String[] blockNames = new String[to - from];
+            System.arraycopy(nodes, from, blockNodes, 0, to - from);
+            System.arraycopy(types, from, blockTypes, 0, to - from);
+            System.arraycopy(names, from, blockNames, 0, to - from);
+            blocks[first + i] = new Block(key, blockNodes, blockTypes, blockNames);
+        };
+        if ((keyCount > 2 * blocks.length + 64) || (partitionCount(size) > 2 * partitions_.length)
+                || (2 * partitionCount(size) < partitions_.length)) {
+            return reindexed(blocks, size, version);
+        };
+
+        int[] starts = new int[blocks.length];
+        System.arraycopy(starts_, 0, starts, 0, first);
+        int[] blockIndices = new int[keyCount];
+        System.arraycopy(blockIndices_, 0, blockIndices, 0, blockIndices_.length);
+        for (int i = first; i < first + count; i++) {
+            blockIndices[blocks_[i].key_] = -1;
+        };
+        for (int i = first; i < blocks.length; i++) {
+            starts[i] = (i == 0) ? 0 : starts[i - 1] + blocks[i - 1].nodes_.length;
+            blockIndices[blocks[i].key_] = i;
+        };
+
+        Partition[] partitions = partitions_.clone();
+        if (removedName != null) {
+            writable(partitions, removedName).remove(removedName);
+        };
+        for (int i = first; i < first + pieces; i++) {
+            int key = blocks[i].key_;
+            for (int j = 0; j < blocks[i].names_.length; j++) {
+                String name = blocks[i].names_[j];
+                if (partitions[partitionOf(name, partitions.length)].get(name) != key) {
+                    writable(partitions, name).put(name, key);
+                };
+            };
+        };
+        return new RingIndex(blocks, starts, blockIndices, partitions, size,
+                workstationCount_ + workstationDelta, printerCount_ + printerDelta, duplicateNames_,
+                version);
+    }
+
+/**
+Answer the partition of #name in #partitions, replacing it by a copy first when it is
+shared with #receiver.
+ */
+    private Partition writable(Partition[] partitions, String name) {
+        int partition = partitionOf(name, partitions.length);
+        if (partitions[partition] == partitions_[partition]) {
+            partitions[partition] = new Partition(partitions_[partition]);
+        };
+        return partitions[partition];
+    }
+
+/**
+Answer the index of the nodes in #blocks, holding #size nodes, indexed as a whole.
+ */
+    private static RingIndex reindexed(Block[] blocks, int size, int version) {
+        Node[] nodes = new Node[size];
+        byte[] types = new byte[size];
+        String[] names = new String[size];
+        int position = 0;
+        for (int i = 0; i < blocks.length; i++) {
+            int length = blocks[i].nodes_.length;
+            System.arraycopy(blocks[i].nodes_, 0, nodes, position, length);
+            System.arraycopy(blocks[i].types_, 0, types, position, length);
+            System.arraycopy(blocks[i].names_, 0, names, position, length);
+            position += length;
+        };
+        return new RingIndex(nodes, types, names, version);
+    }
+
+/**
+Answer the hash of #name: String.hashCode(), with its high bits mixed into the low ones.
+ */
+    private static int hash(String name) {
+        int h = name.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+/**
+Answer the capacity of an open addressing table holding #count names: a power of two, at
+least twice #count.
+ */
+    private static int capacityFor(int count) {
+        return Integer.highestOneBit(Math.max(8, 2 * count) - 1) << 1;
+    }
+
+/**
+A <em>Block</em> holds consecutive nodes of a token ring, with the types and names they had
+when it was built. Immutable, so that indexes share it.
+ */
+    private static final class Block {
+        /**
+        Identifies the block in the partitions. An edited block keeps the key of the block it
+        replaces.
+        */
+        final int key_;
+        final Node[] nodes_;
+        final byte[] types_;
+        final String[] names_;
+        /**
+        Open addressing hash table mapping the names in #names_ on their offset. Holds offset + 1,
+        or 0 for an empty slot; a name occurring several times maps on the first.
+        */
+        final int[] slots_;
+
+        Block(int key, Node[] nodes, byte[] types, String[] names) {
+            key_ = key;
+            nodes_ = nodes;
+            types_ = types;
+            names_ = names;
+            slots_ = new int[capacityFor(names.length)];
+            int mask = slots_.length - 1;
+            for (int i = 0; i < names.length; i++) {
+                int slot = hash(names[i]) & mask;
+                while ((slots_[slot] != 0) && !names_[slots_[slot] - 1].equals(names[i])) {
+                    slot = (slot + 1) & mask;
+                };
+                if (slots_[slot] == 0) {
+                    slots_[slot] = i + 1;
+                };
+            };
+        }
+
+/**
+Answer the offset of the first node named #name in #receiver.
+<p><strong>Precondition:</strong> a node of #receiver is named #name;</p>
+ */
+        int offsetOf(String name) {
+            int mask = slots_.length - 1;
+            int slot = hash(name) & mask;
+            while (!names_[slots_[slot] - 1].equals(name)) {
+                slot = (slot + 1) & mask;
+            };
+            return slots_[slot] - 1;
+        }
+    }
+
+/**
+A <em>Partition</em> maps names on the key of the block holding them, in an open addressing
+hash table of parallel arrays. Never changed once the index is built: edits change a copy.
+ */
+    private static final class Partition {
+        /**
+        Hold the name of every slot, null for an empty slot, and the key it maps on.
+        */
+        private String[] names_;
+        private int[] keys_;
+        private int count_;
+
+        Partition(int capacity) {
+            names_ = new String[capacityFor(capacity)];
+            keys_ = new int[names_.length];
+            count_ = 0;
+        }
+
+        Partition(Partition partition) {
+            names_ = partition.names_.clone();
+            keys_ = partition.keys_.clone();
+            count_ = partition.count_;
+        }
+
+        private int slotOf(String name) {
+            int mask = names_.length - 1;
+            int slot = hash(name) & mask;
+            while ((names_[slot] != null) && !names_[slot].equals(name)) {
+                slot = (slot + 1) & mask;
+            };
+            return slot;
+        }
+
+/**
+Answer the key #name maps on, or -1 when it is not mapped.
+ */
+        int get(String name) {
+            int slot = slotOf(name);
+            return (names_[slot] == null) ? -1 : keys_[slot];
+        }
+
+/**
+Map #name on #key, unless it is mapped already. Answer whether it was not.
+ */
+        boolean putIfAbsent(String name, int key) {
+            int slot = slotOf(name);
+            if (names_[slot] != null) {
+                return false;
+            };
+            names_[slot] = name;
+            keys_[slot] = key;
+            count_++;
+            return true;
+        }
+
+        void put(String name, int key) {
+            if (2 * (count_ + 1) > names_.length) {
+                grow();
+            };
+            if (!putIfAbsent(name, key)) {
+                keys_[slotOf(name)] = key;
+            };
+        }
+
+/**
+Unmap #name, shifting the names that probed past its slot back into it.
+ */
+        void remove(String name) {
+            int mask = names_.length - 1;
+            int hole = slotOf(name);
+            if (names_[hole] == null) {
+                return;
+            };
+            count_--;
+            for (int slot = (hole + 1) & mask; names_[slot] != null; slot = (slot + 1) & mask) {
+                int home = hash(names_[slot]) & mask;
+                if (((slot - home) & mask) >= ((slot - hole) & mask)) {
+                    names_[hole] = names_[slot];
+                    keys_[hole] = keys_[slot];
+                    hole = slot;
+                };
+            };
+            names_[hole] = null;
+        }
+
+        private void grow() {
+            String[] names = names_;
+            int[] keys = keys_;
+            names_ = new String[2 * names.length];
+            keys_ = new int[names_.length];
+            count_ = 0;
+            for (int i = 0; i < names.length; i++) {
+                if (names[i] != null) {
+                    putIfAbsent(names[i], keys[i]);
+                };
+            };
+        }
+    }
+
+/**
+A <em>Segment</em> builds the blocks [from_, to_) of a RingIndex being built, and records the
+partition of the name of each of their nodes, splitting itself while it holds more than
+SEGMENT_SIZE nodes.
+ */
+    private static class Segment extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final RingIndex index_;
+        private final Node[] nodes_;
+        private final byte[] types_;
+        private final String[] names_;
+        private final int[] partitionOf_;
+        private final int from_, to_;
+        private int workstationCount_ = 0;
+        private int printerCount_ = 0;
+
+        Segment(RingIndex index, Node[] nodes, byte[] types, String[] names, int[] partitionOf,
+                int from, int to) {
+            index_ = index;
+            nodes_ = nodes;
+            types_ = types;
+            names_ = names;
+            partitionOf_ = partitionOf;
+            from_ = from;
+            to_ = to;
+        }
+
+        protected void compute() {
+            if ((to_ - from_ > 1) && ((to_ - from_) * BLOCK_SIZE > SEGMENT_SIZE)) {
+                int middle = (from_ + to_) >>> 1;
+                Segment left = new Segment(index_, nodes_, types_, names_, partitionOf_, from_, middle);
+                Segment right = new Segment(index_, nodes_, types_, names_, partitionOf_, middle, to_);
+                invokeAll(left, right);
+                workstationCount_ = left.workstationCount_ + right.workstationCount_;
+                printerCount_ = left.printerCount_ + right.printerCount_;
+                return;
+            };
+            int partitionCount = index_.partitions_.length;
+            for (int block = from_; block < to_; block++) {
+                int start = block * BLOCK_SIZE;
+                int length = Math.min(BLOCK_SIZE, nodes_.length - start);
+                Node[] nodes = new Node[length];
+                byte[] types = new byte[length];
+                String[] names = new String[length];
+                System.arraycopy(nodes_, start, nodes, 0, length);
+                for (int i = 0; i < length; i++) {
+                    types[i] = (types_ == null) ? nodes[i].getType_() : types_[start + i];
+                    names[i] = (names_ == null) ? nodes[i].getName_() : names_[start + i];
+                    partitionOf_[start + i] = partitionOf(names[i], partitionCount);
+                    if (types[i] == Node.WORKSTATION) {
+                        workstationCount_++;
+                    } else if (types[i] == Node.PRINTER) {
+                        printerCount_++;
+                    };
+                };
+                index_.blocks_[block] = new Block(block, nodes, types, names);
+                index_.starts_[block] = start;
+                index_.blockIndices_[block] = block;
+            };
+        }
+    }
+
+/**
+A <em>Partitioning</em> fills the partitions [from_, to_) of a RingIndex being built from the
+positions of their names, sorted on partition and in ring order within one, so that a name
+shared by several nodes maps on the block of the first. Splits itself while its partitions
+hold more than SEGMENT_SIZE names.
+ */
+    private static class Partitioning extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final RingIndex index_;
+        private final int[] partitionStarts_;
+        private final int[] positions_;
+        private final int from_, to_;
+        private boolean duplicateNames_ = false;
+
+        Partitioning(RingIndex index, int[] partitionStarts, int[] positions, int from, int to) {
+            index_ = index;
+            partitionStarts_ = partitionStarts;
+            positions_ = positions;
+            from_ = from;
+            to_ = to;
+        }
+
+        protected void compute() {
+            if ((to_ - from_ > 1) && (partitionStarts_[to_] - partitionStarts_[from_] > SEGMENT_SIZE)) {
+                int middle = (from_ + to_) >>> 1;
+                Partitioning left = new Partitioning(index_, partitionStarts_, positions_, from_, middle);
+                Partitioning right = new Partitioning(index_, partitionStarts_, positions_, middle, to_);
+                invokeAll(left, right);
+                duplicateNames_ = left.duplicateNames_ | right.duplicateNames_;
+                return;
+            };
+            for (int partition = from_; partition < to_; partition++) {
+                int first = partitionStarts_[partition], last = partitionStarts_[partition + 1];
+                Partition built = new Partition(last - first);
+                for (int i = first; i < last; i++) {
+                    int position = positions_[i];
+                    Block block = index_.blocks_[position / BLOCK_SIZE];
+                    if (!built.putIfAbsent(block.names_[position % BLOCK_SIZE], block.key_)) {
+                        duplicateNames_ = true;
+                    };
+                };
+                index_.partitions_[partition] = built;
+            };
+        }
+    }
+}
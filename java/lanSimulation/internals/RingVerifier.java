@@ -0,0 +1,148 @@
+/*   This file is part of lanSimulation.
+ *
+ *   lanSimulation is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *
+ *   lanSimulation is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with lanSimulation; if not, write to the Free Software
+ *   Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ *   Copyright original Java version: 2004 Bart Du Bois, Serge Demeyer
+ *   Copyright C++ version: 2006 Matthias Rieger, Bart Van Rompaey
+ */
+package lanSimulation.internals;
+
+/**
+A <em>RingVerifier</em> verifies whether a token ring is consistent without allocating
+anything per node. Cycles are detected by chasing the nextNode_ pointers of Node objects,
+or the next node ids of a Topology, with Brent's algorithm, and nodes are counted in
+primitive counters. Duplicate names are found by the RingIndex or Topology naming the nodes.
+ */
+public class RingVerifier {
+    //enumeration constants specifying the outcome of a verification
+    /**
+    The token ring is consistent.
+    */
+    public static final int CONSISTENT = 0;
+    /**
+    There are no registered workstations or there is no first node.
+    */
+    public static final int EMPTY = 1;
+    /**
+    A registered workstation is not of type WORKSTATION.
+    */
+    public static final int NOT_A_WORKSTATION = 2;
+    /**
+    The token ring does not lead back to its first node.
+    */
+    public static final int NOT_CIRCULAR = 3;
+    /**
+    The token ring does not contain a printer.
+    */
+    public static final int NO_PRINTER = 4;
+    /**
+    Some workstation on the token ring is not registered.
+    */
+    public static final int UNREGISTERED_WORKSTATION = 5;
+    /**
+    Several nodes on the token ring have the same name.
+    */
+    public static final int DUPLICATE_NAME = 6;
+
+/**
+Verify the token ring starting at #firstNode, which should contain exactly
+#registeredWorkstations workstations.
+ */
+    public static int verify(Node firstNode, int registeredWorkstations) {
+        Node tortoise = firstNode, hare = firstNode;
+        int power = 1, steps = 0;
+        int printersFound = 0, workstationsFound = 0;
+
+        // a circular ring leads the hare back to firstNode before it can catch
+        // up with the tortoise; meeting the tortoise first means the ring ends
+        // in a cycle that does not contain firstNode
+        while (true) {
+            if (hare.getType_() == Node.WORKSTATION) {
+                workstationsFound++;
+            };
+            if (hare.getType_() == Node.PRINTER) {
+                printersFound++;
+            };
+            hare = hare.getNextNode_();
+            if ((hare == null) || (hare == tortoise && hare != firstNode)) {
+                return NOT_CIRCULAR;
+            };
+            if (hare == firstNode) {
+                break;
+            };
+            steps++;
+            if (steps == power) {
+                tortoise = hare;
+                power <<= 1;
+                steps = 0;
+            };
+        }
+        return verdict(printersFound, workstationsFound, registeredWorkstations);
+    }
+
+/**
+Verify the token ring described by #topology, which should contain exactly
+#registeredWorkstations workstations. The same algorithm as for a ring of Node objects,
+chasing int ids instead of pointers. As a topology also holds the nodes that are not on
+the token ring, the ring must visit all topology.size() of them.
+ */
+    public static int verify(Topology topology, int registeredWorkstations) {
+        int firstId = topology.firstId();
+        int tortoise = firstId, hare = firstId;
+        int power = 1, steps = 0;
+        int printersFound = 0, workstationsFound = 0, nodesFound = 0;
+
+        while (true) {
+            nodesFound++;
+            if (topology.typeOf(hare) == Node.WORKSTATION) {
+                workstationsFound++;
+            };
+            if (topology.typeOf(hare) == Node.PRINTER) {
+                printersFound++;
+            };
+            hare = topology.nextOf(hare);
+            if ((hare < 0) || (hare >= topology.size())
+                    || (hare == tortoise && hare != firstId)) {
+                return NOT_CIRCULAR;
+            };
+            if (hare == firstId) {
+                break;
+            };
+            steps++;
+            if (steps == power) {
+                tortoise = hare;
+                power <<= 1;
+                steps = 0;
+            };
+        }
+        if (nodesFound != topology.size()) {
+            return NOT_CIRCULAR;
+        };
+        if (topology.hasDuplicateNames()) {
+            return DUPLICATE_NAME;
+        };
+        return verdict(printersFound, workstationsFound, registeredWorkstations);
+    }
+
+    private static int verdict(int printersFound, int workstationsFound, int registeredWorkstations) {
+        if (printersFound == 0) {
+            return NO_PRINTER;
+        };
+        if (workstationsFound != registeredWorkstations) {
+            return UNREGISTERED_WORKSTATION;
+        };
+        return CONSISTENT;
+    }
+}
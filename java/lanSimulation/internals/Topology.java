@@ -0,0 +1,87 @@
+/*   This file is part of lanSimulation.
+ *
+ *   lanSimulation is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *
+ *   lanSimulation is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with lanSimulation; if not, write to the Free Software
+ *   Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ *   Copyright original Java version: 2004 Bart Du Bois, Serge Demeyer
+ *   Copyright C++ version: 2006 Matthias Rieger, Bart Van Rompaey
+ */
+package lanSimulation.internals;
+
+/**
+A <em>Topology</em> describes a token ring in terms of integer node ids. Each node has a
+type (one of the Node type constants), a name and a next node. Requests and printing
+operations of a Network only need this view, so the nodes do not have to be Node objects.
+ */
+public abstract class Topology {
+
+/**
+Answer the number of nodes on the token ring.
+ */
+    public abstract int size();
+
+/**
+Answer the id of the "first" node, where printing operations start.
+ */
+    public abstract int firstId();
+
+/**
+Answer the id of the node named #name, or -1 when there is no such node.
+ */
+    public abstract int idOf(String name);
+
+/**
+Answer the type of node #id.
+ */
+    public abstract byte typeOf(int id);
+
+/**
+Answer the name of node #id.
+ */
+    public abstract String nameOf(int id);
+
+/**
+Answer the id of the node following node #id on the token ring.
+ */
+    public abstract int nextOf(int id);
+
+/**
+Answer the number of nodes of type WORKSTATION.
+ */
+    public abstract int workstationCount();
+
+/**
+Answer the position of node #id on the token ring, counted from firstId().
+ */
+    public abstract int positionOf(int id);
+
+/**
+Answer whether several nodes have the same name; idOf() then answers the first of them.
+ */
+    public abstract boolean hasDuplicateNames();
+
+/**
+Answer the number of nodes that pass a packet on when it travels from node #fromId
+until it reaches node #toId. When #toId is -1 (not on the ring) or equal to #fromId, the
+packet travels the whole token ring.
+ */
+    public int hopsBetween(int fromId, int toId) {
+        int size = size();
+        if (toId < 0) {
+            return size;
+        } else {
+            return ((positionOf(toId) - positionOf(fromId) - 1 + size) % size) + 1;
+        }
+    }
+}
@@ -0,0 +1,408 @@
+/*   This file is part of lanSimulation.
+ *
+ *   lanSimulation is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *
+ *   lanSimulation is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with lanSimulation; if not, write to the Free Software
+ *   Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ *   Copyright original Java version: 2004 Bart Du Bois, Serge Demeyer
+ *   Copyright C++ version: 2006 Matthias Rieger, Bart Van Rompaey
+ */
+package lanSimulation.internals;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+
+/**
+<em>TopologyFormat</em> writes a token ring in ring order, starting at its "first" node, in
+a JSON or a binary exchange format, and reads it back as a CompactTopology. Both are
+written and read in a single streaming pass.
+<p>The JSON format names every node after its type, like the XML representation does:</p>
+<pre>
+    {"network":[{"workstation":"Filip"},{"node":"n1"},{"printer":"Andy"}]}
+</pre>
+<p>The binary format holds, all integers being unsigned LEB128 varints unless stated
+otherwise:</p>
+<pre>
+    header    int MAGIC (4 bytes, big-endian), byte VERSION, size, nameCount
+    names     nameCount times: length, UTF-8 bytes; every distinct name once
+    nodes     size times: byte type, index of its name in the names section
+</pre>
+ */
+public class TopologyFormat {
+    /**
+    First int of every binary topology.
+    */
+    public static final int MAGIC = 0x4C414E42; // "LANB"
+    /**
+    Version of the binary format.
+    */
+    public static final byte VERSION = 1;
+    private static final int CHUNK_SIZE = 1 << 13;
+    private static final int TABLE_CHUNK = 1 << 16;
+    private static final String[] TYPE_NAMES = {"node", "workstation", "printer"};
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+/**
+Write #topology on #out in the JSON format.
+<p><strong>Precondition:</strong> the token ring is circular;</p>
+ */
+    public static void writeJSON(Topology topology, Appendable out) throws IOException {
+        StringBuilder chunk = new StringBuilder(CHUNK_SIZE + 64);
+        int currentId = topology.firstId();
+        chunk.append("{\"network\":[");
+        do {
+            if (currentId != topology.firstId()) {
+                chunk.append(',');
+            };
+            chunk.append("{\"");
+            chunk.append(TYPE_NAMES[topology.typeOf(currentId)]);
+            chunk.append("\":\"");
+            appendEscaped(chunk, topology.nameOf(currentId));
+            chunk.append("\"}");
+            if (chunk.length() >= CHUNK_SIZE) {
+                out.append(chunk);
+                chunk.setLength(0);
+            };
+            currentId = topology.nextOf(currentId);
+        } while (currentId != topology.firstId());
+        chunk.append("]}\n");
+        out.append(chunk);
+    }
+
+    private static void appendEscaped(StringBuilder buf, String text) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if ((c == '"') | (c == '\\')) {
+                buf.append('\\').append(c);
+            } else if (c < 0x20) {
+                buf.append("\\u00").append(HEX[c >> 4]).append(HEX[c & 0xF]);
+            } else {
+                buf.append(c);
+            };
+        };
+    }
+
+/**
+Write #topology on #out in the binary format. #out is flushed, not closed.
+<p><strong>Precondition:</strong> the token ring is circular;</p>
+ */
+    public static void writeBinary(Topology topology, OutputStream out) throws IOException {
+        int size = topology.size();
+        HashMap<String, Integer> nameIndex = new HashMap<String, Integer>(size * 2);
+        String[] nameTable = new String[size];
+        int[] nodeNames = new int[size];
+        int nameCount = 0, position = 0;
+        int currentId = topology.firstId();
+        do {
+            String name = topology.nameOf(currentId);
+            Integer index = nameIndex.get(name);
+            if (index == null) {
+                index = Integer.valueOf(nameCount);
+                nameIndex.put(name, index);
+                nameTable[nameCount++] = name;
+            };
+            nodeNames[position++] = index.intValue();
+            currentId = topology.nextOf(currentId);
+        } while (currentId != topology.firstId());
+
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out, 1 << 16));
+        data.writeInt(MAGIC);
+        data.writeByte(VERSION);
+        writeVarint(data, position);
+        writeVarint(data, nameCount);
+        for (int i = 0; i < nameCount; i++) {
+            byte[] bytes = nameTable[i].getBytes(StandardCharsets.UTF_8);
+            writeVarint(data, bytes.length);
+            data.write(bytes);
+        };
+        currentId = topology.firstId();
+        for (int i = 0; i < position; i++) {
+            data.writeByte(topology.typeOf(currentId));
+            writeVarint(data, nodeNames[i]);
+            currentId = topology.nextOf(currentId);
+        };
+        data.flush();
+    }
+
+    private static void writeVarint(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        };
+        out.writeByte(value);
+    }
+
+    private static int readVarint(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                if (value < 0) {
+                    throw new IOException("Malformed binary topology");
+                };
+                return value;
+            };
+        };
+        throw new IOException("Malformed binary topology");
+    }
+
+/**
+Read a token ring in the binary format from #in, its first node getting id 0. The sizes in
+the header are not trusted: the tables grow while they are read, so a corrupt size runs into
+the end of #in instead of allocating the memory it claims.
+ */
+    public static CompactTopology readBinary(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(new BufferedInputStream(in, 1 << 16));
+        try {
+            if ((data.readInt() != MAGIC) | (data.readByte() != VERSION)) {
+                throw new IOException("Not a lanSimulation binary topology");
+            };
+            int size = readVarint(data);
+            int nameCount = readVarint(data);
+            if ((size <= 0) | (nameCount <= 0) | (nameCount > size)) {
+                throw new IOException("Malformed binary topology");
+            };
+            String[] nameTable = new String[Math.min(nameCount, TABLE_CHUNK)];
+            byte[] bytes = new byte[64];
+            for (int i = 0; i < nameCount; i++) {
+                int length = readVarint(data);
+                int read = 0;
+                do {
+                    if (read == bytes.length) {
+                        byte[] newBytes = new byte[(int) Math.min(length, bytes.length * 2L)];
+                        System.arraycopy(bytes, 0, newBytes, 0, read);
+                        bytes = newBytes;
+                    };
+                    int chunk = Math.min(length, bytes.length) - read;
+                    data.readFully(bytes, read, chunk);
+                    read += chunk;
+                } while (read < length);
+                if (i == nameTable.length) {
+                    String[] newTable = new String[(int) Math.min(nameCount, i * 2L)];
+                    System.arraycopy(nameTable, 0, newTable, 0, i);
+                    nameTable = newTable;
+                };
+                nameTable[i] = new String(bytes, 0, length, StandardCharsets.UTF_8);
+            };
+            byte[] types = new byte[Math.min(size, TABLE_CHUNK)];
+            String[] names = new String[types.length];
+            for (int id = 0; id < size; id++) {
+                if (id == types.length) {
+                    byte[] newTypes = new byte[(int) Math.min(size, id * 2L)];
+                    String[] newNames = new String[newTypes.length];
+                    System.arraycopy(types, 0, newTypes, 0, id);
+                    System.arraycopy(names, 0, newNames, 0, id);
+                    types = newTypes;
+                    names = newNames;
+                };
+                types[id] = data.readByte();
+                int index = readVarint(data);
+                if ((types[id] < Node.NODE) | (types[id] > Node.PRINTER)
+                        | (index < 0) | (index >= nameCount)) {
+                    throw new IOException("Malformed binary topology");
+                };
+                names[id] = nameTable[index];
+            };
+            return new CompactTopology(types, names, ringOrder(size), 0);
+        } catch (EOFException exc) {
+            throw new IOException("Truncated binary topology");
+        }
+    }
+
+/**
+Read a token ring in the JSON format from #in, its first node getting id 0.
+ */
+    public static CompactTopology readJSON(Reader in) throws IOException {
+        JSONScanner scanner = new JSONScanner(in);
+        byte[] types = new byte[64];
+        String[] names = new String[64];
+        int size = 0;
+
+        scanner.expect('{');
+        if (!scanner.readString().equals("network")) {
+            throw scanner.error();
+        };
+        scanner.expect(':');
+        scanner.expect('[');
+        do {
+            scanner.expect('{');
+            String type = scanner.readString();
+            scanner.expect(':');
+            if (size == types.length) {
+                byte[] newTypes = new byte[size * 2];
+                String[] newNames = new String[size * 2];
+                System.arraycopy(types, 0, newTypes, 0, size);
+                System.arraycopy(names, 0, newNames, 0, size);
+                types = newTypes;
+                names = newNames;
+            };
+            types[size] = typeNamed(type, scanner);
+            names[size] = scanner.readString();
+            size++;
+            scanner.expect('}');
+        } while (scanner.skip(','));
+        scanner.expect(']');
+        scanner.expect('}');
+
+        byte[] ringTypes = new byte[size];
+        String[] ringNames = new String[size];
+        System.arraycopy(types, 0, ringTypes, 0, size);
+        System.arraycopy(names, 0, ringNames, 0, size);
+        return new CompactTopology(ringTypes, ringNames, ringOrder(size), 0);
+    }
+
+    private static byte typeNamed(String type, JSONScanner scanner) throws IOException {
+        for (byte i = Node.NODE; i <= Node.PRINTER; i++) {
+            if (TYPE_NAMES[i].equals(type)) {
+                return i;
+            };
+        };
+        throw scanner.error();
+    }
+
+/**
+Answer the next node ids of a token ring of #size nodes stored in ring order.
+ */
+    private static int[] ringOrder(int size) {
+        int[] next = new int[size];
+        for (int id = 0; id < size - 1; id++) {
+            next[id] = id + 1;
+        };
+        next[size - 1] = 0;
+        return next;
+    }
+
+/**
+A <em>JSONScanner</em> reads the tokens of the JSON format from a Reader through its own
+buffer, so no token but the strings is allocated.
+ */
+    private static class JSONScanner {
+        private Reader in_;
+        private char[] buffer_;
+        private int position_;
+        private int limit_;
+        /**
+        Holds the number of characters consumed before #buffer_, for error messages.
+        */
+        private long consumed_;
+        private StringBuilder string_;
+
+        JSONScanner(Reader in) {
+            in_ = in;
+            buffer_ = new char[CHUNK_SIZE];
+            position_ = 0;
+            limit_ = 0;
+            consumed_ = 0;
+            string_ = new StringBuilder(64);
+        }
+
+        IOException error() {
+            return new IOException("Malformed JSON network at character "
+                    + (consumed_ + position_));
+        }
+
+        /**
+        Answer the next character without consuming it, or -1 at the end of the input.
+        */
+        private int peek() throws IOException {
+            if (position_ == limit_) {
+                consumed_ += limit_;
+                position_ = 0;
+                limit_ = Math.max(0, in_.read(buffer_));
+                if (limit_ == 0) {
+                    return -1;
+                };
+            };
+            return buffer_[position_];
+        }
+
+        private int next() throws IOException {
+            int c = peek();
+            if (c < 0) {
+                throw error();
+            };
+            position_++;
+            return c;
+        }
+
+        private int peekToken() throws IOException {
+            int c = peek();
+            while ((c == ' ') | (c == '\t') | (c == '\n') | (c == '\r')) {
+                position_++;
+                c = peek();
+            };
+            return c;
+        }
+
+        void expect(char token) throws IOException {
+            if (peekToken() != token) {
+                throw error();
+            };
+            position_++;
+        }
+
+        boolean skip(char token) throws IOException {
+            if (peekToken() != token) {
+                return false;
+            };
+            position_++;
+            return true;
+        }
+
+        String readString() throws IOException {
+            expect('"');
+            string_.setLength(0);
+            int c = next();
+            while (c != '"') {
+                if (c == '\\') {
+                    c = next();
+                    switch (c) {
+                    case 'b': c = '\b'; break;
+                    case 'f': c = '\f'; break;
+                    case 'n': c = '\n'; break;
+                    case 'r': c = '\r'; break;
+                    case 't': c = '\t'; break;
+                    case 'u':
+                        int code = 0;
+                        for (int i = 0; i < 4; i++) {
+                            int digit = Character.digit((char) next(), 16);
+                            if (digit < 0) {
+                                throw error();
+                            };
+                            code = (code << 4) | digit;
+                        };
+                        c = code;
+                        break;
+                    case '"': case '\\': case '/':
+                        break;
+                    default:
+                        throw error();
+                    };
+                };
+                string_.append((char) c);
+                c = next();
+            };
+            return string_.toString();
+        }
+    }
+}
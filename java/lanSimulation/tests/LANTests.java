@@ -1,271 +1,1403 @@
-/*   This file is part of lanSimulation.
- *
- *   lanSimulation is free software; you can redistribute it and/or modify
- *   it under the terms of the GNU General Public License as published by
- *   the Free Software Foundation; either version 2 of the License, or
- *   (at your option) any later version.
- *
- *   lanSimulation is distributed in the hope that it will be useful,
- *   but WITHOUT ANY WARRANTY; without even the implied warranty of
- *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
- *   GNU General Public License for more details.
- *
- *   You should have received a copy of the GNU General Public License
- *   along with lanSimulation; if not, write to the Free Software
- *   Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
- *
- *   Copyright original Java version: 2004 Bart Du Bois, Serge Demeyer
- *   Copyright C++ version: 2006 Matthias Rieger, Bart Van Rompaey
- */
-package lanSimulation.tests;
-
-import lanSimulation.internals.*;
-import lanSimulation.*;
-import junit.framework.*;
-import junit.extensions.*;
-import java.lang.AssertionError;
-import java.io.*;
-
-public class LANTests extends TestCase {
-
-    public static Test suite() {
-        TestSuite testSuite = new TestSuite(LANTests.class);
-        return testSuite;
-    }
-
-    public void testBasicPacket() {
-        Packet packet;
-        
-    	packet = new Packet("c", "a");
-        assertEquals("message_",
-            packet.getMessage_(), "c");
-        assertEquals("destination_",
-            packet.getDestination_(), "a");
-        assertEquals("origin_",
-            packet.getOrigin_(), "");
-        packet.setOrigin_("o");
-        assertEquals("origin_ (after setting)",
-            packet.getOrigin_(), "o");
-    }
-
-    private boolean compareFiles (String filename1, String filename2) {
-	FileInputStream f1, f2;
-	int b1 = 0, b2 = 0;
-
-	try {
-	    f1 = new FileInputStream(filename1);
-	    try {
-		f2 = new FileInputStream(filename2);
-	    } catch (FileNotFoundException f2exc) {
-		try {f1.close();} catch (IOException exc) {};
-		return false; // file 2 does not exist
-	    }
-	} catch (FileNotFoundException f1exc) {
-	    return false; //file 1 does not exist
-	};
-
-	try {
-	    if (f1.available() != f2.available()) {return false;} // length of files is different
-	    while ((b1 != -1) & (b2 != -1)) {
-		b1 = f1.read();
-		b2 = f2.read();
-		if (b1 != b2) {return false;} // discovered one diferring character
-	    };
-	    if ((b1 == -1) & (b2 == -1)){
-		return true; // reached both end of files
-	    } else {
-		return false; // one end of file not reached
-	    }
-	} catch (IOException exc) {
-	    return false; // read error, assume one file corrupted
-	} finally {
-	    try {f1.close();} catch (IOException exc) {};
-	    try {f2.close();} catch (IOException exc) {};
-	}
-    }
-
-    private void YOUMAYWANTTOtestCompareFiles() {
-	String fName1 = "testCompare1.txt", fName2 = "testCompare2.txt",
-	  fName3 = "testCompare3.txt", fName4 = "testCompare4.txt";
-	FileWriter f1, f2, f3, f4;
-
-	try {
-	    f1 = new FileWriter(fName1);
-	    try {
-		f2 = new FileWriter(fName2);
-		try {
-		    f3 = new FileWriter(fName3);
-		    try {
-			f4 = new FileWriter(fName4);
-		    } catch (IOException f3exc) {
-			try {f1.close();} catch (IOException exc) {};
-			try {f2.close();} catch (IOException exc) {};
-			try {f3.close();} catch (IOException exc) {};
-			return;
-		    }
-		} catch (IOException f3exc) {
-		    try {f1.close();} catch (IOException exc) {};
-		    try {f2.close();} catch (IOException exc) {};
-		    return;
-		}
-	    } catch (IOException f2exc) {
-		try {f1.close();} catch (IOException exc) {};
-		return;
-	    }
-	} catch (IOException f1exc) {
-	    return;
-	};
-
-	try {
-	    f1.write("aaa");
-	    f2.write("aaa");
-	    f3.write("aa");
-	    f4.write("aab");
-	} catch (IOException exc) {
-	} finally {
-	    try {f1.close();} catch (IOException exc) {};
-	    try {f2.close();} catch (IOException exc) {};
-	    try {f3.close();} catch (IOException exc) {};
-	    try {f4.close();} catch (IOException exc) {};
-	}
-
-        assertTrue("equals fName1 to fName2 ", compareFiles(fName1, fName2));
-        assertFalse("not equals fName1 to fName3 (fName 3 is shorter)", compareFiles(fName1, fName3));
-        assertFalse("not equals fName3 to fName1  (fName 3 is shorter)", compareFiles(fName3, fName1));
-        assertFalse("not equals fName1 to fName4 (last character differs)", compareFiles(fName1, fName4));
-        assertFalse("not equals fName1 to fName4 (last character differs)", compareFiles(fName1, fName4));
-    }
-
-    public void testBasicNode() {
-        Node node;
-
-    	node = new Node(Node.NODE, "n");
-        assertEquals("type_",
-            node.getType_(), Node.NODE);
-        assertEquals("name_",
-            node.getName_(), "n");
-        assertEquals("nextNode_",
-            node.getNextNode_(), null);
-        node.setNextNode_(node);
-        assertEquals("nextNode_ (after setting)",
-            node.getNextNode_(), node);
-    }
-
-    public void testDefaultNetworkToString() {
-        Network network = Network.DefaultExample();
-
-        assertTrue("isInitialized ", network.isInitialized());
-        assertTrue("consistentNetwork ", network.consistentNetwork());
-        assertEquals("DefaultNetwork.toString()",
-            network.toString(),
-            "Workstation Filip [Workstation] -> Node n1 [Node] -> Workstation Hans [Workstation] -> Printer Andy [Printer] ->  ... ");
-    }
-
-    public void testWorkstationPrintsDocument() {
-        Network network = Network.DefaultExample();
-	StringWriter report = new StringWriter(500);
-
-        assertTrue("PrintSuccess ",
-            network.requestWorkstationPrintsDocument("Filip", "Hello World", "Andy", report));
-        assertFalse("PrintFailure (UnkownPrinter) ",
-            network.requestWorkstationPrintsDocument("Filip", "Hello World", "UnknownPrinter", report));
-        assertFalse("PrintFailure (print on Workstation) ",
-            network.requestWorkstationPrintsDocument("Filip", "Hello World", "Hans", report));
-        assertFalse("PrintFailure (print on Node) ",
-            network.requestWorkstationPrintsDocument("Filip", "Hello World", "n1", report));
-        assertTrue("PrintSuccess Postscript",
-	    network.requestWorkstationPrintsDocument("Filip", "!PS Hello World in postscript", "Andy", report));
-        assertFalse("PrintFailure Postscript",
-	    network.requestWorkstationPrintsDocument("Filip", "!PS Hello World in postscript", "Hans", report));
-    }
-
-    public void testBroadcast() {
-        Network network = Network.DefaultExample();
-	StringWriter report = new StringWriter(500);
-
-        assertTrue("Broadcast ",
-		   network.requestBroadcast(report));
-    }
-
-    /**
-Test whether output routines work as expected.
-This is done by comparing generating output on a file "useOutput.txt" and
-comparing it to a file "expectedOutput.txt". On a first run this test might
-break because the file "expectedOutput.txt" does not exist. Then just run the
-test, verify manually whether "useOutput.txt" conforms to the expected output
-and if it does rename "useOutput.txt" in "expectedOutput.txt". From then on
-the tests should work as expected.
-*/
-    public void testOutput () {
-        Network network = Network.DefaultExample();
-	String generateOutputFName = "useOutput.txt", expectedOutputFName = "expectedOutput.txt";
-	FileWriter generateOutput;
-	StringBuffer buf = new StringBuffer(500);
-	StringWriter report = new StringWriter(500);
-
-	try {
-	    generateOutput = new FileWriter(generateOutputFName);
-	} catch (IOException f2exc) {
-	    assertTrue("Could not create '" + generateOutputFName + "'", false);
-	    return;
-	};
-
-	try {
-	    buf.append("---------------------------------ASCII------------------------------------------\n");
-	    network.printOn(buf);
-	    buf.append("\n\n---------------------------------HTML------------------------------------------\n");
-	    network.printHTMLOn(buf);
-	    buf.append("\n\n---------------------------------XML------------------------------------------\n");
-	    network.printXMLOn(buf);
-	    generateOutput.write(buf.toString());
-	    report.write("\n\n---------------------------------SCENARIO: Print Success --------------------------\n");
-	    network.requestWorkstationPrintsDocument("Filip", "Hello World", "Andy", report);
-	    report.write("\n\n---------------------------------SCENARIO: PrintFailure (UnkownPrinter) ------------\n");
-	    network.requestWorkstationPrintsDocument("Filip", "Hello World", "UnknownPrinter", report);
-	    report.write("\n\n---------------------------------SCENARIO: PrintFailure (print on Workstation) -----\n");
-	    network.requestWorkstationPrintsDocument("Filip", "Hello World", "Hans", report);
-	    report.write("\n\n---------------------------------SCENARIO: PrintFailure (print on Node) -----\n");
-	    network.requestWorkstationPrintsDocument("Filip", "Hello World", "n1", report);
-	    report.write("\n\n---------------------------------SCENARIO: Print Success Postscript-----------------\n");
-	    network.requestWorkstationPrintsDocument("Filip", "!PS Hello World in postscript", "Andy", report);
-	    report.write("\n\n---------------------------------SCENARIO: Print Failure Postscript-----------------\n");
-	    network.requestWorkstationPrintsDocument("Filip", "!PS Hello World in postscript", "Hans", report);
-	    report.write("\n\n---------------------------------SCENARIO: Broadcast Success -----------------\n");
-	    network.requestBroadcast(report);
-	    generateOutput.write(report.toString());
-	} catch (IOException exc) {
-	} finally {
-	    try {generateOutput.close();} catch (IOException exc) {};
-	};
-        assertTrue("Generated output is not as expected ", compareFiles(generateOutputFName, expectedOutputFName));
-    }
-
-  /*  static public class PreconditionViolationTestCase extends ExceptionTestCase {
-            public PreconditionViolationTestCase(String name, Class exception) {
-                super(name, exception);
-            }*/
-
-    
-	public void test() {
-		try{
-		
-	    Network network = Network.DefaultExample();
-	    StringWriter report = new StringWriter(100);
-	    network.requestWorkstationPrintsDocument("Unknown Workstation",
-					      "does not matter", "does not matter", report);
-		}catch(AssertionError a)
-		{
-			System.out.println(a.getMessage());
-		}
-	}
-
-  
-    
-/*    public void testPreconditionViolation() {
-        PreconditionViolationTestCase test= new PreconditionViolationTestCase("test", AssertionError.class);
-        TestResult result= test.;
-        assertEquals(1, result.runCount());
-        assertEquals(1, result.errorCount());
-    }*/
-
+/*   This file is part of lanSimulation.
+ *
+ *   lanSimulation is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *
+ *   lanSimulation is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with lanSimulation; if not, write to the Free Software
+ *   Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ *   Copyright original Java version: 2004 Bart Du Bois, Serge Demeyer
+ *   Copyright C++ version: 2006 Matthias Rieger, Bart Van Rompaey
+ */
+package lanSimulation.tests;
+
+import lanSimulation.internals.*;
+import lanSimulation.*;
+import junit.framework.*;
+import junit.extensions.*;
+import java.lang.AssertionError;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+
+public class LANTests extends TestCase {
+
+    public static Test suite() {
+        TestSuite testSuite = new TestSuite(LANTests.class);
+        return testSuite;
+    }
+
+    public void testBasicPacket() {
+        Packet packet;
+        
+    	packet = new Packet("c", "a");
+        assertEquals("message_",
+            packet.getMessage_(), "c");
+        assertEquals("destination_",
+            packet.getDestination_(), "a");
+        assertEquals("origin_",
+            packet.getOrigin_(), "");
+        packet.setOrigin_("o");
+        assertEquals("origin_ (after setting)",
+            packet.getOrigin_(), "o");
+        assertEquals("originId_",
+            packet.getOriginId_(), -1);
+        assertEquals("destinationId_",
+            packet.getDestinationId_(), -1);
+    }
+
+    private String accounting(String message) throws IOException {
+        StringWriter report = new StringWriter();
+        new Packet(message, "Andy").printDocument(report);
+        String text = report.toString();
+        return text.substring(0, text.indexOf('\n'));
+    }
+
+    public void testPacketAccounting() throws IOException {
+        assertEquals("author and title",
+            "\tAccounting -- author = 'Bart' -- title = 'Report'",
+            accounting("!PS author:Bart. title:Report. more"));
+        assertEquals("title before author",
+            "\tAccounting -- author = 'A' -- title = 'T'",
+            accounting("!PS title:T. author:A"));
+        assertEquals("title within author",
+            "\tAccounting -- author = 'B title:R' -- title = 'R'",
+            accounting("!PS author:B title:R."));
+        assertEquals("empty author",
+            "\tAccounting -- author = '' -- title = 'Untitled'",
+            accounting("!PS author:"));
+        assertEquals("case-sensitive keys",
+            "\tAccounting -- author = 'Unknown' -- title = 'Untitled'",
+            accounting("!PS Author:x. Title:y."));
+        assertEquals("ASCII author",
+            "\tAccounting -- author = '89abcdef' -- title = 'ASCII DOCUMENT'",
+            accounting("0123456789abcdefgh"));
+        assertEquals("short ASCII document",
+            "\tAccounting -- author = 'Unknown' -- title = 'ASCII DOCUMENT'",
+            accounting("!ps author:x."));
+    }
+
+    private boolean compareFiles (String filename1, String filename2) {
+	FileInputStream f1, f2;
+	int b1 = 0, b2 = 0;
+
+	try {
+	    f1 = new FileInputStream(filename1);
+	    try {
+		f2 = new FileInputStream(filename2);
+	    } catch (FileNotFoundException f2exc) {
+		try {f1.close();} catch (IOException exc) {};
+		return false; // file 2 does not exist
+	    }
+	} catch (FileNotFoundException f1exc) {
+	    return false; //file 1 does not exist
+	};
+
+	try {
+	    if (f1.available() != f2.available()) {return false;} // length of files is different
+	    while ((b1 != -1) & (b2 != -1)) {
+		b1 = f1.read();
+		b2 = f2.read();
+		if (b1 != b2) {return false;} // discovered one diferring character
+	    };
+	    if ((b1 == -1) & (b2 == -1)){
+		return true; // reached both end of files
+	    } else {
+		return false; // one end of file not reached
+	    }
+	} catch (IOException exc) {
+	    return false; // read error, assume one file corrupted
+	} finally {
+	    try {f1.close();} catch (IOException exc) {};
+	    try {f2.close();} catch (IOException exc) {};
+	}
+    }
+
+    private void YOUMAYWANTTOtestCompareFiles() {
+	String fName1 = "testCompare1.txt", fName2 = "testCompare2.txt",
+	  fName3 = "testCompare3.txt", fName4 = "testCompare4.txt";
+	FileWriter f1, f2, f3, f4;
+
+	try {
+	    f1 = new FileWriter(fName1);
+	    try {
+		f2 = new FileWriter(fName2);
+		try {
+		    f3 = new FileWriter(fName3);
+		    try {
+			f4 = new FileWriter(fName4);
+		    } catch (IOException f3exc) {
+			try {f1.close();} catch (IOException exc) {};
+			try {f2.close();} catch (IOException exc) {};
+			try {f3.close();} catch (IOException exc) {};
+			return;
+		    }
+		} catch (IOException f3exc) {
+		    try {f1.close();} catch (IOException exc) {};
+		    try {f2.close();} catch (IOException exc) {};
+		    return;
+		}
+	    } catch (IOException f2exc) {
+		try {f1.close();} catch (IOException exc) {};
+		return;
+	    }
+	} catch (IOException f1exc) {
+	    return;
+	};
+
+	try {
+	    f1.write("aaa");
+	    f2.write("aaa");
+	    f3.write("aa");
+	    f4.write("aab");
+	} catch (IOException exc) {
+	} finally {
+	    try {f1.close();} catch (IOException exc) {};
+	    try {f2.close();} catch (IOException exc) {};
+	    try {f3.close();} catch (IOException exc) {};
+	    try {f4.close();} catch (IOException exc) {};
+	}
+
+        assertTrue("equals fName1 to fName2 ", compareFiles(fName1, fName2));
+        assertFalse("not equals fName1 to fName3 (fName 3 is shorter)", compareFiles(fName1, fName3));
+        assertFalse("not equals fName3 to fName1  (fName 3 is shorter)", compareFiles(fName3, fName1));
+        assertFalse("not equals fName1 to fName4 (last character differs)", compareFiles(fName1, fName4));
+        assertFalse("not equals fName1 to fName4 (last character differs)", compareFiles(fName1, fName4));
+    }
+
+    public void testBasicNode() {
+        Node node;
+
+    	node = new Node(Node.NODE, "n");
+        assertEquals("type_",
+            node.getType_(), Node.NODE);
+        assertEquals("name_",
+            node.getName_(), "n");
+        assertEquals("nextNode_",
+            node.getNextNode_(), null);
+        node.setNextNode_(node);
+        assertEquals("nextNode_ (after setting)",
+            node.getNextNode_(), node);
+    }
+
+    public void testRingVerifier() {
+        Node ws = new Node(Node.WORKSTATION, "ws");
+        Node n1 = new Node(Node.NODE, "n1");
+        Node n2 = new Node(Node.NODE, "n2");
+        Node pr = new Node(Node.PRINTER, "pr");
+
+        ws.setNextNode_(n1);
+        n1.setNextNode_(n2);
+        assertEquals("null terminated",
+            RingVerifier.verify(ws, 1), RingVerifier.NOT_CIRCULAR);
+        n2.setNextNode_(n1);
+        assertEquals("cycle without first node",
+            RingVerifier.verify(ws, 1), RingVerifier.NOT_CIRCULAR);
+        n2.setNextNode_(ws);
+        assertEquals("no printer",
+            RingVerifier.verify(ws, 1), RingVerifier.NO_PRINTER);
+        n2.setNextNode_(pr);
+        pr.setNextNode_(ws);
+        assertEquals("unregistered workstation",
+            RingVerifier.verify(ws, 0), RingVerifier.UNREGISTERED_WORKSTATION);
+        assertEquals("consistent",
+            RingVerifier.verify(ws, 1), RingVerifier.CONSISTENT);
+    }
+
+    public void testParallelRingIndex() {
+        int size = 8 * RingIndex.SEGMENT_SIZE + 3;
+        Node first = new Node(Node.WORKSTATION, "ws");
+        Node last = first;
+        for (int i = 1; i < size; i++) {
+            Node node = new Node((i == size / 2) ? Node.PRINTER : Node.NODE, "n" + i);
+            last.setNextNode_(node);
+            last = node;
+        };
+        last.setNextNode_(first);
+        RingIndex index = new RingIndex(first);
+
+        assertEquals("size", size, index.size());
+        assertEquals("workstationCount", 1, index.workstationCount());
+        assertFalse("hasDuplicateNames", index.hasDuplicateNames());
+        for (int i = 1; i < size; i++) {
+            if (index.idOf("n" + i) != i) {
+                fail("idOf(n" + i + ")");
+            };
+        };
+        assertEquals("typeOf", Node.PRINTER, index.typeOf(size / 2));
+        assertEquals("consistent", RingVerifier.verify(first, 1), RingVerifier.CONSISTENT);
+
+        Node duplicate = new Node(Node.NODE, "n5", first);
+        last.setNextNode_(duplicate);
+        index = new RingIndex(first);
+        assertTrue("hasDuplicateNames", index.hasDuplicateNames());
+        assertEquals("idOf (first of duplicates)", 5, index.idOf("n5"));
+        assertEquals("nameOf", "n5", index.nameOf(size));
+    }
+
+    public void testDuplicateNames() throws IOException {
+        CompactTopology topology = new CompactTopology(
+            new byte[] {Node.WORKSTATION, Node.PRINTER, Node.NODE, Node.NODE},
+            new String[] {"Filip", "Andy", "n", "Andy"}, new int[] {1, 2, 3, 0}, 0);
+        File file = File.createTempFile("lanSimulation", ".topology");
+
+        assertTrue("hasDuplicateNames", topology.hasDuplicateNames());
+        assertEquals("idOf (first of duplicates)", 1, topology.idOf("Andy"));
+        assertEquals("consistencyViolation", RingVerifier.DUPLICATE_NAME,
+            new Network(topology).consistencyViolation());
+        try {
+            MappedTopology.write(topology, file);
+            Network network = Network.open(file);
+            assertEquals("consistencyViolation (mapped)", RingVerifier.DUPLICATE_NAME,
+                network.consistencyViolation());
+        } finally {
+            file.delete();
+        }
+
+        Node filip = new Node(Node.WORKSTATION, "Filip");
+        Node andy = new Node(Node.PRINTER, "Andy", new Node(Node.NODE, "n", new Node(Node.NODE, "Andy", filip)));
+        filip.setNextNode_(andy);
+        RingIndex index = new RingIndex(filip);
+        assertTrue("hasDuplicateNames (Node objects)", index.hasDuplicateNames());
+        assertEquals("idOf (first of duplicates)", 1, index.idOf("Andy"));
+    }
+
+    public void testRingIndexEdits() {
+        // grow a ring of one block to many, then shrink it, checking the edited index
+        // against one indexing the ring from scratch
+        java.util.Random random = new java.util.Random(5);
+        Node first = new Node(Node.WORKSTATION, "ws");
+        Node last = first;
+        for (int i = 1; i < RingIndex.BLOCK_SIZE + 5; i++) {
+            Node node = new Node((i % 7 == 0) ? Node.PRINTER : Node.NODE, "n" + i);
+            last.setNextNode_(node);
+            last = node;
+        };
+        last.setNextNode_(first);
+        RingIndex index = new RingIndex(first);
+        for (int i = 0; i < 17000; i++) {
+            int position = random.nextInt(index.size());
+            Node node = index.nodeAt(position);
+            Node previous = index.nodeAt((position + index.size() - 1) % index.size());
+            int edit = random.nextInt(16);
+            if ((i < 8000) ? (edit < 14) : (edit == 0)) {
+                Node inserted = new Node(Node.NODE, "e" + i, node.getNextNode_());
+                node.setNextNode_(inserted);
+                index = index.inserted(position, inserted, i);
+                assertEquals("inserted", position + 1, index.idOf("e" + i));
+            } else if ((edit == 15) || (index.size() < 64)) {
+                Node replacement = new Node(node.getType_(), "r" + i, node.getNextNode_());
+                previous.setNextNode_(replacement);
+                first = (node == first) ? replacement : first;
+                index = index.replaced(position, replacement, i);
+                assertEquals("replaced", position, index.idOf("r" + i));
+                assertEquals("replaced name", -1, index.idOf(node.getName_()));
+            } else {
+                previous.setNextNode_(node.getNextNode_());
+                first = (node == first) ? node.getNextNode_() : first;
+                index = index.removed(position, i);
+                assertEquals("removed", -1, index.idOf(node.getName_()));
+            };
+            if (i % 1000 == 999) {
+                assertSameIndex("edit " + i, new RingIndex(first), index);
+            };
+        };
+        assertTrue("shrunk", index.size() < RingIndex.BLOCK_SIZE);
+        assertEquals("getVersion_", 16999, index.getVersion_());
+    }
+
+    private void assertSameIndex(String message, RingIndex expected, RingIndex actual) {
+        assertEquals(message + ": size", expected.size(), actual.size());
+        assertEquals(message + ": workstationCount", expected.workstationCount(), actual.workstationCount());
+        assertEquals(message + ": printerCount", expected.printerCount(), actual.printerCount());
+        for (int id = 0; id < expected.size(); id++) {
+            if ((expected.nodeAt(id) != actual.nodeAt(id)) || (expected.typeOf(id) != actual.typeOf(id))
+                    || !expected.nameOf(id).equals(actual.nameOf(id))
+                    || (actual.idOf(expected.nameOf(id)) != id)) {
+                fail(message + ": node " + id);
+            };
+        };
+    }
+
+    public void testDefaultNetworkToString() {
+        Network network = Network.DefaultExample();
+
+        assertTrue("isInitialized ", network.isInitialized());
+        assertTrue("consistentNetwork ", network.consistentNetwork());
+        assertEquals("DefaultNetwork.toString()",
+            network.toString(),
+            "Workstation Filip [Workstation] -> Node n1 [Node] -> Workstation Hans [Workstation] -> Printer Andy [Printer] ->  ... ");
+    }
+
+    public void testWorkstationPrintsDocument() {
+        Network network = Network.DefaultExample();
+	StringWriter report = new StringWriter(500);
+
+        assertTrue("PrintSuccess ",
+            network.requestWorkstationPrintsDocument("Filip", "Hello World", "Andy", report));
+        assertFalse("PrintFailure (UnkownPrinter) ",
+            network.requestWorkstationPrintsDocument("Filip", "Hello World", "UnknownPrinter", report));
+        assertFalse("PrintFailure (print on Workstation) ",
+            network.requestWorkstationPrintsDocument("Filip", "Hello World", "Hans", report));
+        assertFalse("PrintFailure (print on Node) ",
+            network.requestWorkstationPrintsDocument("Filip", "Hello World", "n1", report));
+        assertTrue("PrintSuccess Postscript",
+	    network.requestWorkstationPrintsDocument("Filip", "!PS Hello World in postscript", "Andy", report));
+        assertFalse("PrintFailure Postscript",
+	    network.requestWorkstationPrintsDocument("Filip", "!PS Hello World in postscript", "Hans", report));
+    }
+
+    public void testBroadcast() {
+        Network network = Network.DefaultExample();
+	StringWriter report = new StringWriter(500);
+
+        assertTrue("Broadcast ",
+		   network.requestBroadcast(report));
+    }
+
+    public void testRequestsWithoutReport() {
+        Network network = Network.DefaultExample();
+
+        assertTrue("PrintSuccess ",
+            network.requestWorkstationPrintsDocument("Hans", "Hello World", "Andy", null));
+        assertFalse("PrintFailure (UnkownPrinter) ",
+            network.requestWorkstationPrintsDocument("Hans", "Hello World", "UnknownPrinter", null));
+        assertFalse("PrintFailure (print on own Workstation) ",
+            network.requestWorkstationPrintsDocument("Hans", "Hello World", "Hans", null));
+        assertTrue("Broadcast ",
+            network.requestBroadcast(null));
+    }
+
+    public void testRejectMisaddressed() {
+        Network network = Network.DefaultExample();
+	StringWriter report = new StringWriter(500);
+
+        assertTrue("hasPrinter ", network.hasPrinter("Andy"));
+        assertFalse("hasPrinter (Workstation) ", network.hasPrinter("Hans"));
+        assertFalse("hasPrinter (UnknownPrinter) ", network.hasPrinter("UnknownPrinter"));
+        network.setRejectMisaddressed_(true);
+        assertFalse("PrintFailure (UnkownPrinter) ",
+            network.requestWorkstationPrintsDocument("Filip", "Hello World", "UnknownPrinter", report));
+        assertFalse("PrintFailure (print on Workstation) ",
+            network.requestWorkstationPrintsDocument("Filip", "Hello World", "Hans", report));
+        assertEquals("report",
+            "'Filip' requests printing of 'Hello World' on 'UnknownPrinter' ...\n"
+            + ">>> Destinition not found, print job cancelled.\n\n"
+            + "'Filip' requests printing of 'Hello World' on 'Hans' ...\n"
+            + ">>> Destinition is not a printer, print job cancelled.\n\n",
+            report.toString());
+    }
+
+    public void testCompactNetwork() {
+        Network expected = Network.DefaultExample();
+        Network network = new Network(new CompactTopology(
+            new byte[] {Node.PRINTER, Node.WORKSTATION, Node.NODE, Node.WORKSTATION},
+            new String[] {"Andy", "Filip", "n1", "Hans"},
+            new int[] {1, 2, 3, 0}, 1));
+        StringBuffer buf = new StringBuffer(500), expectedBuf = new StringBuffer(500);
+	StringWriter report = new StringWriter(500), expectedReport = new StringWriter(500);
+
+        assertTrue("consistentNetwork ", network.consistentNetwork());
+        assertTrue("hasWorkstation ", network.hasWorkstation("Hans"));
+        assertFalse("hasWorkstation (Printer) ", network.hasWorkstation("Andy"));
+        assertEquals("toString()", expected.toString(), network.toString());
+        network.printHTMLOn(buf);
+        expected.printHTMLOn(expectedBuf);
+        network.printXMLOn(buf);
+        expected.printXMLOn(expectedBuf);
+        assertEquals("printHTMLOn() & printXMLOn()", expectedBuf.toString(), buf.toString());
+        assertTrue("PrintSuccess ",
+            network.requestWorkstationPrintsDocument("Filip", "Hello World", "Andy", report));
+        assertFalse("PrintFailure (UnkownPrinter) ",
+            network.requestWorkstationPrintsDocument("Filip", "Hello World", "UnknownPrinter", report));
+        assertFalse("PrintFailure (print on Workstation) ",
+            network.requestWorkstationPrintsDocument("Filip", "Hello World", "Hans", report));
+        assertTrue("Broadcast ", network.requestBroadcast(report));
+        expected.requestWorkstationPrintsDocument("Filip", "Hello World", "Andy", expectedReport);
+        expected.requestWorkstationPrintsDocument("Filip", "Hello World", "UnknownPrinter", expectedReport);
+        expected.requestWorkstationPrintsDocument("Filip", "Hello World", "Hans", expectedReport);
+        expected.requestBroadcast(expectedReport);
+        assertEquals("report", expectedReport.toString(), report.toString());
+    }
+
+    public void testCompactNodeOffRing() {
+        CompactTopology topology = new CompactTopology(
+            new byte[] {Node.WORKSTATION, Node.PRINTER, Node.PRINTER},
+            new String[] {"ws", "p1", "p2"},
+            new int[] {1, 0, 0}, 0);
+        Network network = new Network(topology);
+
+        assertEquals("verify", RingVerifier.NOT_CIRCULAR, RingVerifier.verify(topology, 1));
+        assertEquals("consistencyViolation", RingVerifier.NOT_CIRCULAR, network.consistencyViolation());
+        assertFalse("consistentNetwork", network.consistentNetwork());
+    }
+
+    public void testMappedNetwork() throws IOException {
+        Network expected = Network.DefaultExample();
+        File file = File.createTempFile("lanSimulation", ".topology");
+	StringWriter report = new StringWriter(500), expectedReport = new StringWriter(500);
+
+        try {
+            expected.writeTopologyOn(file);
+            Network network = Network.open(file);
+            assertTrue("consistentNetwork ", network.consistentNetwork());
+            assertTrue("hasWorkstation ", network.hasWorkstation("Filip"));
+            assertFalse("hasWorkstation (Node) ", network.hasWorkstation("n1"));
+            assertEquals("toString()", expected.toString(), network.toString());
+            network.requestWorkstationPrintsDocument("Filip", "Hello World", "Andy", report);
+            network.requestWorkstationPrintsDocument("Filip", "Hello World", "n1", report);
+            expected.requestWorkstationPrintsDocument("Filip", "Hello World", "Andy", expectedReport);
+            expected.requestWorkstationPrintsDocument("Filip", "Hello World", "n1", expectedReport);
+            assertEquals("report", expectedReport.toString(), report.toString());
+
+            MappedTopology topology = new MappedTopology(file);
+            assertEquals("ring order", 3, topology.idOf("Andy"));
+            assertEquals("ring order", 0, topology.nextOf(3));
+            // a name offset out of order, then a hash table slot beyond the last node
+            long[] corruptions = {28, 44};
+            RandomAccessFile raf;
+            for (int i = 0; i < corruptions.length; i++) {
+                expected.writeTopologyOn(file);
+                raf = new RandomAccessFile(file, "rw");
+                try {
+                    raf.seek(corruptions[i]);
+                    raf.writeInt(1000);
+                } finally {
+                    raf.close();
+                };
+                try {
+                    new MappedTopology(file);
+                    fail("corrupted topology file");
+                } catch (IOException exc) {
+                    // expected
+                };
+            };
+            expected.writeTopologyOn(file);
+            raf = new RandomAccessFile(file, "rw");
+            try {
+                raf.setLength(raf.length() - 1);
+            } finally {
+                raf.close();
+            };
+            try {
+                Network.open(file);
+                fail("truncated topology file");
+            } catch (IOException exc) {
+                // expected
+            };
+            raf = new RandomAccessFile(file, "rw");
+            try {
+                raf.writeInt(0);
+            } finally {
+                raf.close();
+            };
+            try {
+                Network.open(file);
+                fail("not a topology file");
+            } catch (IOException exc) {
+                // expected
+            };
+        } finally {
+            file.delete();
+        }
+    }
+
+    public void testMappedPayload() throws IOException {
+        Network network = Network.DefaultExample();
+        String first = "!PS author:Bart. title:Spooled.", second = "spooled ASCII document";
+        File file = File.createTempFile("lanSimulation", ".spool");
+	StringWriter report = new StringWriter(500), expectedReport = new StringWriter(500);
+
+        try {
+            FileOutputStream out = new FileOutputStream(file);
+            out.write((first + second).getBytes("ISO-8859-1"));
+            out.close();
+            RandomAccessFile spool = new RandomAccessFile(file, "r");
+            ByteBuffer mapping = spool.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, spool.length());
+            spool.close();
+            mapping.limit(first.length());
+            Packet firstPacket = new Packet(mapping, "Filip", "Andy");
+            mapping.limit(first.length() + second.length()).position(first.length());
+            Packet secondPacket = new Packet(mapping, "Hans", "Andy");
+
+            assertEquals("payload", second, secondPacket.getPayload_().toString());
+            assertEquals("subSequence", "Spooled", firstPacket.getPayload_().subSequence(23, 30).toString());
+            String[] workstations = {"Filip", "Hans"}, printers = {"Andy", "Andy"};
+            network.requestPrintJobs(workstations,
+                new CharSequence[] {firstPacket.getPayload_(), secondPacket.getPayload_()}, printers, report);
+            network.requestPrintJobs(workstations, new CharSequence[] {first, second}, printers, expectedReport);
+            assertEquals("report", expectedReport.toString(), report.toString());
+        } finally {
+            file.delete();
+        }
+    }
+
+    public void testPipeline() {
+        Network network = Network.DefaultExample();
+        String document = "!PS author:Bart. title:Pipelined.";
+	StringWriter report = new StringWriter(500), expectedReport = new StringWriter(500);
+
+        assertEquals("store and forward", 50, new Pipeline(4, 1).transferSteps(10, 5));
+        assertEquals("two in flight", 26, new Pipeline(4, 2).transferSteps(10, 5));
+        assertEquals("full pipeline", 14, new Pipeline(4, 5).transferSteps(10, 5));
+        assertEquals("deeper than route", 14, new Pipeline(4, 64).transferSteps(10, 5));
+        assertEquals("reassemble", document,
+            new Pipeline(4, 1).reassemble(new Pipeline(4, 1).split(document)).toString());
+
+        network.requestWorkstationPrintsDocument("Filip", document, "Andy", expectedReport);
+        Pipeline pipeline = new Pipeline(4, 8);
+        EventLog log = new EventLog(16);
+        network.setPipeline_(pipeline);
+        assertTrue("print with pipeline",
+            network.requestWorkstationPrintsDocument("Filip", document, "Andy", report));
+        String expected = expectedReport.toString();
+        int accounting = expected.indexOf("\tAccounting");
+        assertEquals("report", expected.substring(0, accounting)
+            + "\tDocument sent in 9 fragments of 4 characters over 3 hops in 11 steps.\n"
+            + expected.substring(accounting), report.toString());
+
+        network.setEventLog_(log);
+        assertTrue("print without report",
+            network.requestWorkstationPrintsDocument("Filip", document, "Andy", null));
+        assertEquals("documents", 2, pipeline.getDocuments_());
+        assertEquals("fragments", 18, pipeline.getFragments_());
+        assertEquals("steps", 22, pipeline.getSteps_());
+        assertEquals("throughput", 3.0, pipeline.throughput(), 0.0);
+        assertEquals("logged transfer", EventLog.DOCUMENT_SENT, log.typeAt(log.size() - 2));
+        assertEquals("logged steps", 11, log.transferStepsAt(log.size() - 2));
+    }
+
+    public void testSimulator() {
+        Network network = Network.DefaultExample();
+        String[][] requests = {
+            {"Filip", "Hello World", "Andy"},
+            {"Hans", "!PS author:Bart. title:Simulated.", "Andy"},
+            {"Filip", "Hello World", "UnknownPrinter"},
+            {"Filip", "Hello World", "n1"}};
+
+        for (int i = 0; i < requests.length; i++) {
+            StringWriter report = new StringWriter(500), expectedReport = new StringWriter(500);
+            Simulator simulator = new Simulator(network, 10, 1);
+            int packetId = simulator.submitPrint(0, requests[i][0], requests[i][1], requests[i][2]);
+            boolean expected = network.requestPrintJobs(new String[] {requests[i][0]},
+                new CharSequence[] {requests[i][1]}, new String[] {requests[i][2]}, expectedReport)[0];
+            simulator.run(report);
+            assertEquals("report " + i, expectedReport.toString(), report.toString());
+            assertEquals("outcome " + i, expected ? Simulator.DELIVERED : Simulator.CANCELLED,
+                simulator.outcomeOf(packetId));
+        };
+
+        StringWriter report = new StringWriter(500), expectedReport = new StringWriter(500);
+        Simulator simulator = new Simulator(network, 10, 1);
+        simulator.submitBroadcast(0);
+        simulator.run(report);
+        network.requestBroadcast(expectedReport);
+        assertEquals("broadcast report", expectedReport.toString(), report.toString());
+
+        simulator = new Simulator(network, 10, 1);
+        int unknown = simulator.submitPrint(0, "UnknownWorkstation", "Hello World", "Andy");
+        simulator.run(null);
+        assertEquals("unknown workstation", Simulator.CANCELLED, simulator.outcomeOf(unknown));
+
+        simulator = new Simulator(network, 10, 1);
+        assertTrue("insertAfter", network.insertAfter("n1", Node.WORKSTATION, "Emma"));
+        int edited = simulator.submitPrint(0, "Emma", "Hello World", "Andy");
+        simulator.run(null);
+        assertEquals("workstation added after the snapshot", Simulator.CANCELLED,
+            simulator.outcomeOf(edited));
+        assertTrue("remove", network.remove("Emma"));
+
+        simulator = new Simulator(network, 10, 1);
+        int first = simulator.submitPrint(0, "Filip", "Hello World", "Andy");
+        int second = simulator.submitPrint(0, "Hans", "Hello World", "Andy");
+        int third = simulator.submitPrint(0, "Hans", "Hello World", "Andy");
+        simulator.run(5, null);
+        assertEquals("in flight", Simulator.PENDING, simulator.outcomeOf(first));
+        simulator.run(null);
+        assertEquals("first delivered", 30, simulator.finishTimeOf(first));
+        assertEquals("token passed on to Hans", 31, simulator.finishTimeOf(second));
+        assertEquals("token travelled whole ring", 72, simulator.finishTimeOf(third));
+    }
+
+    public void testTokenRing() {
+        Network network = Network.DefaultExample();
+        StringWriter report = new StringWriter(500), expectedReport = new StringWriter(500);
+        TokenRing ring = new TokenRing(network, report);
+
+        ring.submit("Filip", "Hello World", "Andy");
+        ring.submit("Hans", "Hello World", "n1");
+        network.requestWorkstationPrintsDocument("Filip", "Hello World", "Andy", expectedReport);
+        network.requestWorkstationPrintsDocument("Hans", "Hello World", "n1", expectedReport);
+        assertEquals("report", expectedReport.toString(), report.toString());
+        assertFalse("hasStation", ring.hasStation("n1"));
+    }
+
+    public void testTokenRingContention() throws InterruptedException {
+        Network network = Network.DefaultExample();
+        final TokenRing contended = new TokenRing(network, null);
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            final String workstation = (i % 2 == 0) ? "Filip" : "Hans";
+            threads[i] = new Thread() {
+                public void run() {
+                    for (int j = 0; j < 500; j++) {
+                        contended.submit(workstation, "Hello World", "Andy");
+                    };
+                }
+            };
+            threads[i].start();
+        };
+        for (int i = 0; i < threads.length; i++) {
+            threads[i].join();
+        };
+        assertEquals("pendingJobs", 0, contended.pendingJobs());
+        assertEquals("jobCountOf", 1000, contended.jobCountOf("Filip"));
+        assertEquals("jobCountOf", 1000, contended.jobCountOf("Hans"));
+        assertTrue("utilization", (contended.utilization() > 0.0) & (contended.utilization() <= 1.0));
+        StringBuffer buf = new StringBuffer();
+        contended.printStatisticsOn(buf);
+        assertTrue("statistics", buf.toString().startsWith("Workstation Filip: 1000 jobs, average wait "));
+    }
+
+    public void testTokenRingUnderLoad() throws InterruptedException {
+        Network network = Network.DefaultExample();
+        Thread[] threads = new Thread[4];
+        // a thread holding the token returns under sustained load of other threads
+        final TokenRing loaded = new TokenRing(network, null);
+        final CountDownLatch stop = new CountDownLatch(1);
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread() {
+                public void run() {
+                    while (stop.getCount() > 0) {
+                        loaded.submit("Hans", "Hello World", "Andy");
+                    };
+                }
+            };
+            threads[i].start();
+        };
+        for (int j = 0; j < 200; j++) {
+            loaded.submit("Filip", "Hello World", "Andy");
+        };
+        stop.countDown();
+        for (int i = 0; i < threads.length; i++) {
+            threads[i].join();
+        };
+        assertEquals("jobCountOf under load", 200, loaded.jobCountOf("Filip"));
+        assertEquals("pendingJobs under load", 0, loaded.pendingJobs());
+    }
+
+    public void testVerdictCache() {
+        byte[] types = {Node.PRINTER, Node.WORKSTATION, Node.NODE, Node.WORKSTATION};
+        String[] names = {"Andy", "Filip", "n1", "Hans"};
+        int[] next = {1, 2, 3, 0};
+        CompactTopology topology = new CompactTopology(types, names, next, 1);
+        Network network = new Network(topology);
+
+        assertEquals("consistencyViolation", RingVerifier.CONSISTENT, network.consistencyViolation());
+        int version = network.topologyVersion();
+        types[0] = Node.NODE; // the only printer, in the array the topology was built from
+        assertEquals("verdict reused", RingVerifier.CONSISTENT, network.consistencyViolation());
+        assertEquals("topologyVersion", version, network.topologyVersion());
+        network.reconfigure(new CompactTopology(types, names, next, 1));
+        assertEquals("topologyVersion", version + 1, network.topologyVersion());
+        assertEquals("verdict recomputed", RingVerifier.NO_PRINTER, network.consistencyViolation());
+        network.reconfigure(topology);
+        assertEquals("topologyVersion", version + 2, network.topologyVersion());
+        assertTrue("verdict recomputed", network.consistentNetwork());
+    }
+
+    public void testConcurrentRequests() throws InterruptedException {
+        final Network network = NetworkBuilder.randomRing(2000, 0.3, 0.1, 5).build();
+        String text = network.toString();
+        int start = text.indexOf("Printer ") + 8;
+        final String printer = text.substring(start, text.indexOf(' ', start));
+        final boolean[] failed = {false};
+        Thread[] threads = new Thread[4];
+
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread() {
+                public void run() {
+                    for (int j = 0; j < 2000; j++) {
+                        if (!(network.hasWorkstation("ws0") && network.hasPrinter(printer)
+                              && network.requestWorkstationPrintsDocument("ws0", "Hello World", printer, null)
+                              && network.consistentNetwork())) {
+                            failed[0] = true;
+                        };
+                    };
+                }
+            };
+            threads[i].start();
+        };
+        for (int j = 0; j < 1000; j++) {
+            assertTrue("insertAfter", network.insertAfter("ws0", Node.NODE, "extra" + j));
+            assertTrue("remove", network.remove("extra" + j));
+        };
+        for (int i = 0; i < threads.length; i++) {
+            threads[i].join();
+        };
+        assertFalse("all requests succeeded", failed[0]);
+        assertEquals("versions", 2000, network.topologyVersion());
+        assertTrue("consistentNetwork", network.consistentNetwork());
+    }
+
+    public void testReconfigureCompact() throws InterruptedException {
+        final CompactTopology small = new CompactTopology(
+            new byte[] {Node.PRINTER, Node.WORKSTATION, Node.NODE, Node.WORKSTATION},
+            new String[] {"Andy", "Filip", "n1", "Hans"},
+            new int[] {1, 2, 3, 0}, 1);
+        final CompactTopology large = new CompactTopology(
+            new byte[] {Node.PRINTER, Node.WORKSTATION, Node.NODE, Node.WORKSTATION, Node.NODE},
+            new String[] {"Andy", "Filip", "n1", "Hans", "n2"},
+            new int[] {1, 2, 3, 4, 0}, 1);
+        final Network network = new Network(small);
+        StringWriter smallReport = new StringWriter(500), largeReport = new StringWriter(500);
+        final String[] reports = new String[2];
+        final boolean[] failed = {false};
+        Thread[] threads = new Thread[4];
+
+        new Network(small).requestBroadcast(smallReport);
+        new Network(large).requestBroadcast(largeReport);
+        reports[0] = smallReport.toString();
+        reports[1] = largeReport.toString();
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread() {
+                public void run() {
+                    for (int j = 0; j < 2000; j++) {
+                        StringWriter report = new StringWriter(500);
+                        if (!(network.requestBroadcast(report)
+                              && (report.toString().equals(reports[0]) || report.toString().equals(reports[1])))) {
+                            failed[0] = true;
+                        };
+                    };
+                }
+            };
+            threads[i].start();
+        };
+        for (int j = 0; j < 2000; j++) {
+            network.reconfigure(((j % 2) == 0) ? large : small);
+        };
+        for (int i = 0; i < threads.length; i++) {
+            threads[i].join();
+        };
+        assertFalse("every request saw one snapshot", failed[0]);
+        assertEquals("versions", network.topologyVersion(), 2000);
+        assertTrue("consistentNetwork", network.consistentNetwork());
+        assertEquals("toString()", Network.DefaultExample().toString(), network.toString());
+    }
+
+    public void testReconfigureNodeRing() throws InterruptedException {
+        final Network ring = Network.DefaultExample();
+        Network longer = Network.DefaultExample();
+        StringWriter ringReport = new StringWriter(500), longerReport = new StringWriter(500);
+        final String[] reports = new String[2];
+        final boolean[] failed = {false};
+        Thread[] threads = new Thread[4];
+        // insert n2 after n1 when it is not on the ring, remove it otherwise
+        Network.Edit toggle = new Network.Edit() {
+            public Node apply(Node firstNode, Map<String, Node> workstations) {
+                Node n1 = firstNode;
+                while (!n1.getName_().equals("n1")) {
+                    n1 = n1.getNextNode_();
+                };
+                if (n1.getNextNode_().getName_().equals("n2")) {
+                    n1.setNextNode_(n1.getNextNode_().getNextNode_());
+                } else {
+                    n1.setNextNode_(new Node(Node.NODE, "n2", n1.getNextNode_()));
+                };
+                return firstNode;
+            }
+        };
+
+        assertTrue("insertAfter", longer.insertAfter("n1", Node.NODE, "n2"));
+        ring.requestBroadcast(ringReport);
+        longer.requestBroadcast(longerReport);
+        reports[0] = ringReport.toString();
+        reports[1] = longerReport.toString();
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread() {
+                public void run() {
+                    for (int j = 0; j < 2000; j++) {
+                        StringWriter report = new StringWriter(500);
+                        if (!(ring.requestBroadcast(report)
+                              && (report.toString().equals(reports[0]) || report.toString().equals(reports[1])))) {
+                            failed[0] = true;
+                        };
+                    };
+                }
+            };
+            threads[i].start();
+        };
+        for (int j = 0; j < 2000; j++) {
+            assertTrue("reconfigure", ring.reconfigure(toggle));
+        };
+        for (int i = 0; i < threads.length; i++) {
+            threads[i].join();
+        };
+        assertFalse("every request saw one snapshot", failed[0]);
+        assertEquals("versions", 2000, ring.topologyVersion());
+        assertTrue("consistentNetwork", ring.consistentNetwork());
+        assertEquals("toString()", Network.DefaultExample().toString(), ring.toString());
+    }
+
+    public void testReconfigureAddsWorkstation() {
+        Network network = Network.DefaultExample();
+        String text = network.toString();
+        StringWriter report = new StringWriter(500);
+
+        // a workstation missing from the registry leaves the network as it was
+        assertFalse("reconfigure (unregistered)", network.reconfigure(new Network.Edit() {
+            public Node apply(Node firstNode, Map<String, Node> workstations) {
+                firstNode.setNextNode_(new Node(Node.WORKSTATION, "Emma", firstNode.getNextNode_()));
+                return firstNode;
+            }
+        }));
+        assertEquals("topologyVersion", 0, network.topologyVersion());
+        assertTrue("consistentNetwork", network.consistentNetwork());
+        assertFalse("hasWorkstation", network.hasWorkstation("Emma"));
+        assertEquals("toString()", text, network.toString());
+
+        assertTrue("reconfigure", network.reconfigure(new Network.Edit() {
+            public Node apply(Node firstNode, Map<String, Node> workstations) {
+                Node emma = new Node(Node.WORKSTATION, "Emma", firstNode.getNextNode_());
+                firstNode.setNextNode_(emma);
+                workstations.put("Emma", emma);
+                return firstNode;
+            }
+        }));
+        assertEquals("topologyVersion", 1, network.topologyVersion());
+        assertTrue("consistentNetwork", network.consistentNetwork());
+        assertTrue("hasWorkstation", network.hasWorkstation("Emma"));
+        assertTrue("PrintSuccess", network.requestWorkstationPrintsDocument("Emma", "Hello World", "Andy", report));
+    }
+
+    public void testInsertAfter() {
+        Network network = Network.DefaultExample();
+
+        assertTrue("insertAfter", network.insertAfter("n1", Node.WORKSTATION, "Emma"));
+        assertTrue("hasWorkstation", network.hasWorkstation("Emma"));
+        assertTrue("consistentNetwork", network.consistentNetwork());
+        assertEquals("toString()", new NetworkBuilder(5).addWorkstation("Filip").addNode("n1")
+            .addWorkstation("Emma").addWorkstation("Hans").addPrinter("Andy").build().toString(), network.toString());
+    }
+
+    public void testRejectedTopologyEdits() {
+        Network network = Network.DefaultExample();
+        String text = network.toString();
+
+        assertFalse("insertAfter (existing name)", network.insertAfter("Filip", Node.NODE, "Hans"));
+        assertFalse("insertAfter (unknown anchor)", network.insertAfter("Nobody", Node.NODE, "n2"));
+        assertFalse("remove (last printer)", network.remove("Andy"));
+        assertFalse("replace (last printer)", network.replace("Andy", Node.NODE, "n2"));
+        assertFalse("insertAfter (unknown type)", network.insertAfter("n1", (byte) 3, "n2"));
+        assertFalse("insertAfter (negative type)", network.insertAfter("n1", (byte) -1, "n2"));
+        assertFalse("replace (unknown type)", network.replace("n1", (byte) 3, "n2"));
+        assertEquals("topologyVersion", 0, network.topologyVersion());
+        assertTrue("consistentNetwork", network.consistentNetwork());
+        assertEquals("toString()", text, network.toString());
+    }
+
+    public void testReplaceAndRemove() {
+        Network network = Network.DefaultExample();
+        StringWriter report = new StringWriter(500);
+
+        assertTrue("replace", network.replace("Andy", Node.PRINTER, "Bob"));
+        assertTrue("remove (first node)", network.remove("Filip"));
+        assertFalse("hasWorkstation (removed)", network.hasWorkstation("Filip"));
+        assertTrue("consistentNetwork", network.consistentNetwork());
+        assertEquals("toString()", new NetworkBuilder(3).addNode("n1")
+            .addWorkstation("Hans").addPrinter("Bob").build().toString(), network.toString());
+        assertTrue("PrintSuccess", network.requestWorkstationPrintsDocument("Hans", "Hello World", "Bob", report));
+        assertFalse("PrintFailure (removed printer)",
+            network.requestWorkstationPrintsDocument("Hans", "Hello World", "Andy", report));
+    }
+
+    public void testTopologyEditChurn() {
+        // churn a large ring, then verify it from scratch
+        Network ring = NetworkBuilder.randomRing(1000, 0.3, 0.1, 11).build();
+        java.util.Random random = new java.util.Random(11);
+        byte[] types = {Node.NODE, Node.WORKSTATION, Node.PRINTER};
+        String[] prefixes = {"n", "ws", "pr"};
+        int version = ring.topologyVersion(), edits = 0;
+        for (int i = 0; i < 3000; i++) {
+            byte type = types[random.nextInt(3)];
+            String name = prefixes[random.nextInt(3)] + random.nextInt(1000);
+            String other = prefixes[type] + random.nextInt(1000);
+            boolean changed;
+            switch (random.nextInt(3)) {
+            case 0:
+                changed = ring.insertAfter(name, type, other + "+" + i);
+                break;
+            case 1:
+                changed = ring.remove(name);
+                break;
+            default:
+                changed = ring.replace(name, type, other);
+            };
+            if (changed) {
+                version++;
+                edits++;
+            };
+            assertEquals("topologyVersion", version, ring.topologyVersion());
+            assertTrue("consistentNetwork", ring.consistentNetwork());
+        };
+        assertTrue("edits", edits > 500);
+        String text = ring.toString();
+        ring.topologyChanged();
+        assertEquals("verified from scratch", RingVerifier.CONSISTENT, ring.consistencyViolation());
+        assertEquals("toString()", text, ring.toString());
+    }
+
+    public void testAsyncNetwork() throws Exception {
+        Network network = Network.DefaultExample();
+        AsyncNetwork async = new AsyncNetwork(network, 4);
+        StringWriter report = new StringWriter(500), expectedReport = new StringWriter(500);
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[1000];
+
+        assertTrue("print", async.requestWorkstationPrintsDocument("Filip", "Hello World", "Andy", report).get().booleanValue());
+        network.requestWorkstationPrintsDocument("Filip", "Hello World", "Andy", expectedReport);
+        assertEquals("report", expectedReport.toString(), report.toString());
+        assertFalse("print on Workstation", async.requestWorkstationPrintsDocument("Filip", "Hello World", "Hans", null).get().booleanValue());
+        for (int i = 0; i < futures.length; i++) {
+            futures[i] = (i % 2 == 0) ? async.requestBroadcast(null)
+                : async.requestWorkstationPrintsDocument("Hans", "Hello World", "Andy", null);
+            assertTrue("maxOutstanding", async.outstandingRequests() <= 4);
+        };
+        CompletableFuture.allOf(futures).get();
+        for (int i = 0; i < futures.length; i++) {
+            assertEquals("result", Boolean.TRUE, futures[i].get());
+        };
+        assertEquals("outstandingRequests", 0, async.outstandingRequests());
+
+        // a request blocked on its report holds its permit until it finishes
+        final CountDownLatch writable = new CountDownLatch(1);
+        Writer blocking = new StringWriter() {
+            public void write(String str) {
+                try {
+                    writable.await();
+                } catch (InterruptedException e) {
+                    // just ignore
+                };
+                super.write(str);
+            }
+        };
+        CompletableFuture<Boolean> blocked = async.requestBroadcast(blocking);
+        assertEquals("outstandingRequests", 1, async.outstandingRequests());
+        assertFalse("isDone", blocked.isDone());
+        writable.countDown();
+        assertEquals("result", Boolean.TRUE, blocked.get());
+        assertEquals("outstandingRequests", 0, async.outstandingRequests());
+        async.shutdown();
+    }
+
+    public void testParallelSimulation() throws IOException {
+        StringWriter parallel = new StringWriter(), sequential = new StringWriter();
+        ForkJoinPool pool = new ForkJoinPool(1);
+
+        try {
+            LANSimulation.simulateParallel(16, 200, 3, ForkJoinPool.commonPool(), parallel);
+            LANSimulation.simulateParallel(16, 200, 3, pool, sequential);
+        } finally {
+            pool.shutdown();
+        };
+        assertEquals("deterministic", sequential.toString(), parallel.toString());
+        assertTrue("first network", parallel.toString().startsWith(
+            "---------------------------------NETWORK 0 (seed 3, workstations 0.1, printers 0.05)\n"));
+        assertTrue("ratios swept", parallel.toString().indexOf("NETWORK 6 (seed 9, workstations 0.5, printers 0.1)") > 0);
+        assertTrue("last network", parallel.toString().indexOf("NETWORK 15 (seed 18, workstations 0.7, printers 0.05)") > 0);
+        assertTrue("totals", parallel.toString().indexOf("---------------------------------TOTAL\n16 networks, ") > 0);
+    }
+
+    public void testNetworkBuilder() {
+        NetworkBuilder builder = NetworkBuilder.randomRing(1000, 0.3, 0.1, 42);
+        Network network = builder.build(), compact = builder.buildCompact();
+	StringWriter report = new StringWriter(500), compactReport = new StringWriter(500);
+
+        assertEquals("size", builder.size(), 1000);
+        assertTrue("consistentNetwork ", network.consistentNetwork());
+        assertTrue("consistentNetwork (compact) ", compact.consistentNetwork());
+        assertTrue("hasWorkstation ", network.hasWorkstation("ws0"));
+        assertEquals("toString()", network.toString(), compact.toString());
+        network.requestBroadcast(report);
+        compact.requestBroadcast(compactReport);
+        assertEquals("report", report.toString(), compactReport.toString());
+        assertEquals("same seed, same ring",
+            NetworkBuilder.randomRing(1000, 0.3, 0.1, 42).buildCompact().toString(), compact.toString());
+    }
+
+    public void testBuilderDuplicateWorkstation() {
+        NetworkBuilder builder = new NetworkBuilder(4).addWorkstation("A").addPrinter("P")
+            .addWorkstation("A");
+
+        assertEquals("build()", RingVerifier.DUPLICATE_NAME, builder.build().consistencyViolation());
+        assertEquals("buildCompact()", RingVerifier.DUPLICATE_NAME,
+            builder.buildCompact().consistencyViolation());
+    }
+
+    public void testStreamingPrint() throws IOException {
+        Network network = NetworkBuilder.randomRing(5000, 0.3, 0.1, 7).build();
+        StringBuffer buf = new StringBuffer(), htmlBuf = new StringBuffer(), xmlBuf = new StringBuffer();
+        StringWriter out = new StringWriter(), htmlOut = new StringWriter(), xmlOut = new StringWriter();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        network.printOn(buf);
+        network.printHTMLOn(htmlBuf);
+        network.printXMLOn(xmlBuf);
+        assertTrue("larger than a chunk", buf.length() > 4 * Network.CHUNK_SIZE);
+        assertEquals("toString()", buf.toString(), network.toString());
+        network.printOn(out);
+        network.printHTMLOn(htmlOut);
+        network.printXMLOn(xmlOut);
+        assertEquals("printOn(Writer)", buf.toString(), out.toString());
+        assertEquals("printHTMLOn(Writer)", htmlBuf.toString(), htmlOut.toString());
+        assertEquals("printXMLOn(Writer)", xmlBuf.toString(), xmlOut.toString());
+        network.printXMLOn(Channels.newChannel(bytes));
+        assertEquals("printXMLOn(WritableByteChannel)", xmlBuf.toString(), bytes.toString("UTF-8"));
+    }
+
+    public void testRenderCache() {
+        Network network = Network.DefaultExample();
+        StringBuffer buf = new StringBuffer();
+        String text = network.toString();
+
+        assertSame("cached toString()", text, network.toString());
+        network.printOn(buf);
+        assertEquals("printOn()", text, buf.toString());
+        network.topologyChanged();
+        assertNotSame("new topology version", text, network.toString());
+        assertEquals("same rendering", text, network.toString());
+        assertTrue("insertAfter", network.insertAfter("n1", Node.NODE, "n9"));
+        assertTrue("edit rendered", network.toString().indexOf("Node n9 [Node]") >= 0);
+        assertTrue("remove", network.remove("n9"));
+        assertEquals("edit undone", text, network.toString());
+        network.printXMLOn(buf);
+        text = network.toString();
+        network.setRenderCacheLimit_(Math.max(text.length(), buf.length() - text.length()));
+        assertSame("fits the cache", text, network.toString());
+        network.printXMLOn(new StringBuffer());
+        assertNotSame("evicted", text, network.toString());
+        network.setRenderCacheLimit_(0);
+        assertNotSame("no cache", network.toString(), network.toString());
+        assertEquals("uncached", text, network.toString());
+    }
+
+    public void testExportFormats() throws IOException {
+        Network network = NetworkBuilder.randomRing(3000, 0.3, 0.1, 11).build();
+        Network odd = new NetworkBuilder(3).addWorkstation("ws \"1\"\\\n")
+            .addNode("\u00e9\u20ac").addPrinter("pr \"2\"\\\n").build();
+        StringWriter json = new StringWriter(), oddJson = new StringWriter();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(), oddBytes = new ByteArrayOutputStream();
+
+        network.printJSONOn(json);
+        network.writeBinaryOn(bytes);
+        assertTrue("binary is smaller", bytes.size() < json.toString().length());
+        assertEquals("JSON round trip", network.toString(),
+            Network.readJSON(new StringReader(json.toString())).toString());
+        assertEquals("binary round trip", network.toString(),
+            Network.readBinary(new ByteArrayInputStream(bytes.toByteArray())).toString());
+
+        odd.printJSONOn(oddJson);
+        odd.writeBinaryOn(oddBytes);
+        assertEquals("escaped JSON", odd.toString(),
+            Network.readJSON(new StringReader(oddJson.toString())).toString());
+        assertEquals("odd names", odd.toString(),
+            Network.readBinary(new ByteArrayInputStream(oddBytes.toByteArray())).toString());
+        try {
+            Network.readJSON(new StringReader("{\"network\":[{\"router\":\"r\"}]}"));
+            fail("unknown node type");
+        } catch (IOException exc) {
+            // expected
+        };
+        try {
+            Network.readBinary(new ByteArrayInputStream(bytes.toByteArray(), 0, bytes.size() - 1));
+            fail("truncated binary topology");
+        } catch (IOException exc) {
+            // expected
+        };
+        byte[][] malformed = {
+            // 2^31 - 1 nodes with as many names, then the input ends
+            {0x4C, 0x41, 0x4E, 0x42, 1, -1, -1, -1, -1, 0x07, -1, -1, -1, -1, 0x07, 0},
+            // one node with a name of length -1
+            {0x4C, 0x41, 0x4E, 0x42, 1, 1, 1, -1, -1, -1, -1, 0x0F, 0, 0}};
+        for (int i = 0; i < malformed.length; i++) {
+            try {
+                Network.readBinary(new ByteArrayInputStream(malformed[i]));
+                fail("malformed binary topology");
+            } catch (IOException exc) {
+                // expected
+            };
+        };
+    }
+
+    public void testPrintJobs() {
+        Network network = Network.DefaultExample();
+	StringWriter report = new StringWriter(500), expectedReport = new StringWriter(500);
+        String[] workstations = {"Filip", "Hans", "Hans", "Filip"};
+        String[] documents = {"Hello World", "Hello World", "!PS Hello World in postscript", "Hello World"};
+        String[] printers = {"Andy", "UnknownPrinter", "Andy", "n1"};
+
+        boolean[] results = network.requestPrintJobs(workstations, documents, printers, report);
+        for (int i = 0; i < documents.length; i++) {
+            assertEquals("result " + i, results[i],
+                network.requestWorkstationPrintsDocument(workstations[i],
+                    documents[i], printers[i], expectedReport));
+        };
+        assertEquals("report", expectedReport.toString(), report.toString());
+    }
+
+    public void testReportSink() throws IOException {
+        Network network = Network.DefaultExample();
+	StringWriter expected = new StringWriter(500);
+	StringWriter target = new StringWriter(500), asyncTarget = new StringWriter(500);
+        ReportSink sink = new ReportSink(target, 1 << 16);
+        ReportSink asyncSink = new ReportSink(asyncTarget, 64, 2);
+
+        network.requestWorkstationPrintsDocument("Filip", "Hello World", "Andy", expected);
+        String firstRequest = expected.toString();
+        network.requestBroadcast(expected);
+        network.requestWorkstationPrintsDocument("Filip", "Hello World", "Andy", sink);
+        assertEquals("passed on at request boundary", firstRequest, target.toString());
+        network.requestBroadcast(sink);
+        network.requestWorkstationPrintsDocument("Filip", "Hello World", "Andy", asyncSink);
+        network.requestBroadcast(asyncSink);
+        sink.close();
+        asyncSink.close();
+        assertEquals("report", expected.toString(), target.toString());
+        assertEquals("asynchronous report", expected.toString(), asyncTarget.toString());
+    }
+
+    public void testReportSinkClose() throws IOException {
+        StringWriter target = new StringWriter(500);
+        ReportSink sink = new ReportSink(target, 1 << 16, 2);
+
+        sink.write("report");
+        sink.close();
+        sink.close();
+        assertEquals("report", "report", target.toString());
+        try {
+            sink.write("after close");
+            fail("write after close");
+        } catch (IOException exc) {
+            // expected
+        };
+        assertEquals("report after close", "report", target.toString());
+    }
+
+    public void testSummarizeHops() {
+        Network network = new NetworkBuilder(8).addWorkstation("ws").addNode("n1")
+            .addNode("n2").addNode("n3").addNode("n4").addPrinter("pr").build();
+	StringWriter report = new StringWriter(500);
+
+        network.setSummarizeHops_(true);
+        network.requestWorkstationPrintsDocument("ws", "Hello World", "pr", report);
+        network.requestWorkstationPrintsDocument("ws", "Hello World", "n2", report);
+        network.requestBroadcast(report);
+        assertEquals("report",
+            "'ws' requests printing of 'Hello World' on 'pr' ...\n"
+            + "\tNode 'ws' passes packet on.\n"
+            + "\tNodes 'n1' .. 'n3' pass packet on (3 hops).\n"
+            + "\tNode 'n4' passes packet on.\n"
+            + "\tAccounting -- author = 'Unknown' -- title = 'ASCII DOCUMENT'\n"
+            + ">>> ASCII Print job delivered.\n\n"
+            + "'ws' requests printing of 'Hello World' on 'n2' ...\n"
+            + "\tNode 'ws' passes packet on.\n"
+            + "\tNode 'n1' passes packet on.\n"
+            + ">>> Destinition is not a printer, print job cancelled.\n\n"
+            + "Broadcast Request\n"
+            + "\tNode 'ws' accepts broadcase packet.\n"
+            + "\tNode 'ws' passes packet on.\n"
+            + "\tNodes 'n1' .. 'n4' accept broadcast packet and pass it on (4 hops).\n"
+            + "\tNode 'pr' accepts broadcase packet.\n"
+            + "\tNode 'pr' passes packet on.\n"
+            + ">>> Broadcast travelled whole token ring.\n\n",
+            report.toString());
+    }
+
+    /**
+Test whether output routines work as expected.
+This is done by comparing generating output on a file "useOutput.txt" and
+comparing it to a file "expectedOutput.txt". On a first run this test might
+break because the file "expectedOutput.txt" does not exist. Then just run the
+test, verify manually whether "useOutput.txt" conforms to the expected output
+and if it does rename "useOutput.txt" in "expectedOutput.txt". From then on
+the tests should work as expected.
+*/
+    public void testOutput () {
+        Network network = Network.DefaultExample();
+	String generateOutputFName = "useOutput.txt", expectedOutputFName = "expectedOutput.txt";
+	FileWriter generateOutput;
+	StringBuffer buf = new StringBuffer(500);
+	StringWriter report = new StringWriter(500);
+
+	try {
+	    generateOutput = new FileWriter(generateOutputFName);
+	} catch (IOException f2exc) {
+	    assertTrue("Could not create '" + generateOutputFName + "'", false);
+	    return;
+	};
+
+	try {
+	    buf.append("---------------------------------ASCII------------------------------------------\n");
+	    network.printOn(buf);
+	    buf.append("\n\n---------------------------------HTML------------------------------------------\n");
+	    network.printHTMLOn(buf);
+	    buf.append("\n\n---------------------------------XML------------------------------------------\n");
+	    network.printXMLOn(buf);
+	    generateOutput.write(buf.toString());
+	    report.write("\n\n---------------------------------SCENARIO: Print Success --------------------------\n");
+	    network.requestWorkstationPrintsDocument("Filip", "Hello World", "Andy", report);
+	    report.write("\n\n---------------------------------SCENARIO: PrintFailure (UnkownPrinter) ------------\n");
+	    network.requestWorkstationPrintsDocument("Filip", "Hello World", "UnknownPrinter", report);
+	    report.write("\n\n---------------------------------SCENARIO: PrintFailure (print on Workstation) -----\n");
+	    network.requestWorkstationPrintsDocument("Filip", "Hello World", "Hans", report);
+	    report.write("\n\n---------------------------------SCENARIO: PrintFailure (print on Node) -----\n");
+	    network.requestWorkstationPrintsDocument("Filip", "Hello World", "n1", report);
+	    report.write("\n\n---------------------------------SCENARIO: Print Success Postscript-----------------\n");
+	    network.requestWorkstationPrintsDocument("Filip", "!PS Hello World in postscript", "Andy", report);
+	    report.write("\n\n---------------------------------SCENARIO: Print Failure Postscript-----------------\n");
+	    network.requestWorkstationPrintsDocument("Filip", "!PS Hello World in postscript", "Hans", report);
+	    report.write("\n\n---------------------------------SCENARIO: Broadcast Success -----------------\n");
+	    network.requestBroadcast(report);
+	    generateOutput.write(report.toString());
+	} catch (IOException exc) {
+	} finally {
+	    try {generateOutput.close();} catch (IOException exc) {};
+	};
+        assertTrue("Generated output is not as expected ", compareFiles(generateOutputFName, expectedOutputFName));
+    }
+
+    /**
+Test whether rendering the event log reproduces the report of #testOutput, by regenerating
+the contents of "expectedOutput.txt" from captured events instead of from a report.
+*/
+    public void testEventLogOutput () throws IOException {
+        Network network = Network.DefaultExample();
+	StringBuffer buf = new StringBuffer(500);
+	StringWriter output = new StringWriter(3000);
+	EventLog log = new EventLog(64);
+	String[][] scenarios = {
+	    {"Print Success --------------------------", "Hello World", "Andy"},
+	    {"PrintFailure (UnkownPrinter) ------------", "Hello World", "UnknownPrinter"},
+	    {"PrintFailure (print on Workstation) -----", "Hello World", "Hans"},
+	    {"PrintFailure (print on Node) -----", "Hello World", "n1"},
+	    {"Print Success Postscript-----------------", "!PS Hello World in postscript", "Andy"},
+	    {"Print Failure Postscript-----------------", "!PS Hello World in postscript", "Hans"}};
+
+	buf.append("---------------------------------ASCII------------------------------------------\n");
+	network.printOn(buf);
+	buf.append("\n\n---------------------------------HTML------------------------------------------\n");
+	network.printHTMLOn(buf);
+	buf.append("\n\n---------------------------------XML------------------------------------------\n");
+	network.printXMLOn(buf);
+	output.write(buf.toString());
+	network.setEventLog_(log);
+	for (int i = 0; i < scenarios.length; i++) {
+	    output.write("\n\n---------------------------------SCENARIO: " + scenarios[i][0] + "\n");
+	    log.clear();
+	    network.requestWorkstationPrintsDocument("Filip", scenarios[i][1], scenarios[i][2], null);
+	    log.renderOn(output);
+	};
+	output.write("\n\n---------------------------------SCENARIO: Broadcast Success -----------------\n");
+	log.clear();
+	network.requestBroadcast(null);
+	log.renderOn(output);
+	assertEquals("events", log.typeAt(0), EventLog.BROADCAST_REQUEST);
+	assertEquals("events", log.nodeIdAt(1), 0);
+
+	Reader expected = new FileReader("expectedOutput.txt");
+	StringWriter expectedOutput = new StringWriter(3000);
+	try {
+	    char[] chars = new char[1024];
+	    for (int n = expected.read(chars); n >= 0; n = expected.read(chars)) {
+		expectedOutput.write(chars, 0, n);
+	    };
+	} finally {
+	    expected.close();
+	};
+        assertEquals("Rendered output is not as expected ", expectedOutput.toString(), output.toString());
+    }
+
+    public void testSharedEventLog() throws IOException, InterruptedException {
+        final Network network = new NetworkBuilder(8).addWorkstation("ws").addNode("n1")
+            .addNode("n2").addNode("n3").addNode("n4").addPrinter("pr").build();
+        EventLog log = new EventLog(1 << 14);
+        StringWriter report = new StringWriter(500), rendering = new StringWriter(500);
+        Thread[] threads = new Thread[4];
+        boolean[] packets = new boolean[threads.length * 500];
+
+        network.setSummarizeHops_(true);
+        network.setPipeline_(new Pipeline(4, 2));
+        network.setEventLog_(log);
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread() {
+                public void run() {
+                    for (int j = 0; j < 500; j++) {
+                        network.requestWorkstationPrintsDocument("ws", "Hello World", "pr", null);
+                    };
+                }
+            };
+            threads[i].start();
+        };
+        for (int i = 0; i < threads.length; i++) {
+            threads[i].join();
+        };
+        assertEquals("no lost events", packets.length * 4, log.size());
+        for (int event = 0; event < log.size(); event++) {
+            if (log.typeAt(event) == EventLog.PRINT_REQUEST) {
+                assertFalse("packet id claimed once", packets[log.packetIdAt(event)]);
+                packets[log.packetIdAt(event)] = true;
+            };
+        };
+
+        log.clear();
+        network.requestWorkstationPrintsDocument("ws", "Hello World", "pr", report);
+        network.requestWorkstationPrintsDocument("ws", "Hello World", "n2", report);
+        network.requestBroadcast(report);
+        log.renderOn(rendering);
+        assertEquals("events", EventLog.HOPS_SUMMARIZED, log.typeAt(1));
+        assertEquals("events", EventLog.DOCUMENT_SENT, log.typeAt(2));
+        assertTrue("pipeline reported", report.toString().indexOf("\tDocument sent in 3 fragments") >= 0);
+        assertEquals("rendered report", report.toString(), rendering.toString());
+    }
+
+  /*  static public class PreconditionViolationTestCase extends ExceptionTestCase {
+            public PreconditionViolationTestCase(String name, Class exception) {
+                super(name, exception);
+            }*/
+
+    
+	public void test() {
+		try{
+		
+	    Network network = Network.DefaultExample();
+	    StringWriter report = new StringWriter(100);
+	    network.requestWorkstationPrintsDocument("Unknown Workstation",
+					      "does not matter", "does not matter", report);
+		}catch(AssertionError a)
+		{
+			System.out.println(a.getMessage());
+		}
+	}
+
+  
+    
+/*    public void testPreconditionViolation() {
+        PreconditionViolationTestCase test= new PreconditionViolationTestCase("test", AssertionError.class);
+        TestResult result= test.;
+        assertEquals(1, result.runCount());
+        assertEquals(1, result.errorCount());
+    }*/
+
 }
\ No newline at end of file